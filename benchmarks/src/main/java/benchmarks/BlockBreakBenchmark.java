@@ -0,0 +1,103 @@
+package benchmarks;
+
+import index.ProtectionIndex;
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.*;
+import org.bukkit.permissions.ServerOperator;
+import org.openjdk.jmh.infra.Blackhole;
+import storage.Journal;
+import types.Access;
+import types.Owners;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates players mass breaking blocks, almost none of which
+ * are protected. Guards against the break path regressing to
+ * persisting every broken block
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockBreakBenchmark {
+
+    private static final int BREAKS = 4096;
+    private static final Material[] MINED = {Material.STONE, Material.DIRT, Material.CHEST, Material.FURNACE};
+
+    @Param({"100000"})
+    public int protections;
+
+    private ProtectionIndex<Owners> index;
+    private Access.Lookup lookup;
+    private ServerOperator breaker; // Never op
+    private UUID player;
+    private Material[] types;
+    private int[][] positions;
+    private Journal journal;
+    private File file;
+    private int cursor;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        index = new ProtectionIndex<>();
+        Owners owners = Owners.of(new UUID(random.nextLong(), random.nextLong()));
+        while (index.size() < protections)
+            index.put("world", random.nextInt(4000) - 2000, random.nextInt(256), random.nextInt(4000) - 2000, owners);
+        lookup = new StatusBenchmark.Lookup(index);
+        breaker = new StatusBenchmark.NotOp();
+        player = new UUID(random.nextLong(), random.nextLong());
+
+        // One in twenty broken blocks is a container, next to none are protected
+        types = new Material[BREAKS];
+        positions = new int[BREAKS][];
+        for (int i = 0; i < BREAKS; i++) {
+            types[i] = MINED[random.nextInt(20) == 0 ? 2 + random.nextInt(2) : random.nextInt(2)];
+            positions[i] = new int[] {random.nextInt(4000) - 2000, random.nextInt(256), random.nextInt(4000) - 2000};
+        }
+
+        file = File.createTempFile("eagleeye", ".journal");
+        journal = new Journal(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        if (!file.delete()) file.deleteOnExit();
+    }
+
+    /**
+     * Baseline of the previous behaviour, which no longer runs
+     * anywhere: every break removed the block and persisted the
+     * removal whether or not it was protected
+     */
+    @Benchmark
+    public void persistEveryBreak(Blackhole bh) throws IOException {
+        int[] p = positions[next()];
+        bh.consume(index.get("world", p[0], p[1], p[2]));
+        journal.append("R\tworld:" + p[0] + ":" + p[1] + ":" + p[2]);
+        if (journal.size() >= 1000) journal.reset();
+    }
+
+    /**
+     * Current behaviour through Access.breaking, which Guard
+     * calls for every broken block, bailing out on material and
+     * index before any persistence
+     */
+    @Benchmark
+    public Access.Break fastPath() {
+        int i = next();
+        int[] p = positions[i];
+        return Access.breaking(types[i], lookup, "world", p[0], p[1], p[2], player, breaker);
+    }
+
+    private int next() { return cursor = (cursor + 1) & (BREAKS - 1); }
+
+}
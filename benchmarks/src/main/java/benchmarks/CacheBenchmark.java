@@ -0,0 +1,101 @@
+package benchmarks;
+
+import cache.ExpiringCache;
+import cache.NameIndex;
+import cache.UsernameCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the tiers MojangAPI answers from before reaching the
+ * network: the negative cache, the memory cache and the index
+ * of players known to the server, each looked up through the
+ * same calls as getUUIDAsync
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"1000", "10000"})
+    public int players;
+
+    private ExpiringCache<String, UUID> uuids;
+    private ExpiringCache<String, Boolean> unknown;
+    private UsernameCache usernames;
+    private NameIndex serverProfiles;
+    private String[] known;
+    private String[] missing;
+    private UUID[] fresh;
+    private int cursor;
+
+    /**
+     * Caches every player under the cache limit, as the server
+     * would after they have all joined once
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        uuids = new ExpiringCache<>(players, TimeUnit.DAYS.toNanos(7));
+        unknown = new ExpiringCache<>(1000, TimeUnit.MINUTES.toNanos(5));
+        usernames = new UsernameCache(uuids, unknown);
+        serverProfiles = new NameIndex(TimeUnit.DAYS.toMillis(37));
+        long now = System.currentTimeMillis();
+        String[] names = new String[players];
+        for (int i = 0; i < players; i++) {
+            names[i] = "Player_" + Integer.toString(random.nextInt(Integer.MAX_VALUE), 36);
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            uuids.put(UsernameCache.key(names[i]), uuid);
+            serverProfiles.add(names[i], uuid, now);
+        }
+
+        // Names are typed by players, so never the cached instance
+        known = new String[LOOKUPS];
+        missing = new String[LOOKUPS];
+        fresh = new UUID[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            known[i] = new String(names[random.nextInt(players)]);
+            missing[i] = "Nobody_" + i;
+            fresh[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+    }
+
+    @Benchmark
+    public UUID memoryHit() { return lookup(known[next()]); }
+
+    @Benchmark
+    public UUID memoryMiss() { return lookup(missing[next()]); }
+
+    @Benchmark
+    public UUID serverHit() { return serverProfiles.getUUID(UsernameCache.key(known[next()])); }
+
+    @Benchmark
+    @Threads(4)
+    public UUID contendedHit() { return lookup(known[next()]); }
+
+    @Benchmark
+    public void put() {
+        // Replaces cached players, evicting the least recently used once full
+        int i = next();
+        uuids.put(UsernameCache.key(missing[i]), fresh[i]);
+    }
+
+    private UUID lookup(String username) {
+        // Checks MojangAPI.getUUIDAsync makes before any future is created
+        return usernames.get(username, UsernameCache.key(username));
+    }
+
+    private int next() {
+        // Racy under @Threads, which only spreads lookups further
+        return cursor = (cursor + 1) & (LOOKUPS - 1);
+    }
+
+}
@@ -0,0 +1,204 @@
+package benchmarks;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.*;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.DoubleChestInventory;
+import org.bukkit.inventory.GrindstoneInventory;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.LoomInventory;
+import org.openjdk.jmh.annotations.*;
+import types.Containers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares finding the blocks behind an opened inventory through
+ * its holder, as was done on every click, against the inventory
+ * type table. Allocation per open is printed by main() or shown
+ * by running with -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContainerBenchmark {
+
+    private static final int SLOTS = 27;
+
+    @Param({"CHEST", "DOUBLE_CHEST", "FURNACE"})
+    public String container;
+
+    private Inventory inventory;
+
+    @Setup
+    public void setup() { inventory = standIn(container); }
+
+    @Benchmark
+    public List<Block> holder() { return legacyBlocks(inventory); }
+
+    @Benchmark
+    public List<Block> table() { return Containers.blocksOf(inventory); }
+
+    /**
+     * Prints bytes allocated finding the blocks of each kind of
+     * container, run with
+     * java -cp benchmarks.jar benchmarks.ContainerBenchmark
+     * @param args Unused
+     */
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int opens = 1000000;
+
+        for (String container: new String[] {"CHEST", "DOUBLE_CHEST", "FURNACE"}) {
+            Inventory inventory = standIn(container);
+            long[] bytes = new long[2];
+            for (int round = 0; round < 2; round++) // First round warms up
+                for (int method = 0; method < 2; method++) {
+                    long before = threads.getThreadAllocatedBytes(thread);
+                    for (int i = 0; i < opens; i++)
+                        if ((method == 0 ? legacyBlocks(inventory) : Containers.blocksOf(inventory)).isEmpty())
+                            throw new IllegalStateException("No blocks found");
+                    bytes[method] = threads.getThreadAllocatedBytes(thread) - before;
+                }
+            System.out.printf("%s: holder %d bytes/open, table %d bytes/open%n",
+                    container, bytes[0] / opens, bytes[1] / opens);
+        }
+    }
+
+    /**
+     * Blocks of an inventory as Guard found them before the
+     * inventory type table
+     */
+    private static List<Block> legacyBlocks(Inventory i) {
+        InventoryHolder h = i.getHolder();
+        if (h instanceof Chest) {
+            return Collections.singletonList(((Chest) h).getBlock());
+        } else if (h instanceof DoubleChest) {
+            return Arrays.asList(((Chest) ((DoubleChest) h).getLeftSide()).getBlock(),
+                    ((Chest) ((DoubleChest) h).getRightSide()).getBlock());
+        } else if (h instanceof Furnace) {
+            return Collections.singletonList(((Furnace) h).getBlock());
+        } else if (h instanceof Hopper) {
+            return Collections.singletonList(((Hopper) h).getBlock());
+        } else if (h instanceof Dispenser) {
+            return Collections.singletonList(((Dispenser) h).getBlock());
+        } else if (h instanceof Barrel) {
+            return Collections.singletonList(((Barrel) h).getBlock());
+        } else if (h instanceof Dropper) {
+            return Collections.singletonList(((Dropper) h).getBlock());
+        } else if (i instanceof LoomInventory || i instanceof GrindstoneInventory) {
+            return Collections.singletonList(i.getLocation().getBlock());
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Creates an inventory behaving like CraftBukkit's, where
+     * every holder is a new block state carrying a copy of the
+     * inventory's contents and every location is a new Location
+     */
+    private static Inventory standIn(String container) {
+        World world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[] {World.class},
+                new BlockWorld());
+        if (container.equals("DOUBLE_CHEST")) {
+            Inventory left = blockInventory(world, 0, Chest.class, InventoryType.CHEST);
+            Inventory right = blockInventory(world, 1, Chest.class, InventoryType.CHEST);
+            DoubleChestInventory[] self = new DoubleChestInventory[1];
+            return self[0] = (DoubleChestInventory) Proxy.newProxyInstance(DoubleChestInventory.class.getClassLoader(),
+                    new Class<?>[] {DoubleChestInventory.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getType": return InventoryType.CHEST;
+                            case "getLeftSide": return left;
+                            case "getRightSide": return right;
+                            case "getHolder": return new DoubleChest(self[0]);
+                            case "getLocation": return new Location(world, 0.5, 64, 0);
+                            case "getSize": return SLOTS * 2;
+                            default: throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+        return container.equals("FURNACE") ? blockInventory(world, 0, Furnace.class, InventoryType.FURNACE)
+                : blockInventory(world, 0, Chest.class, InventoryType.CHEST);
+    }
+
+    private static Inventory blockInventory(World world, int x, Class<? extends BlockState> state, InventoryType type) {
+        Block block = world.getBlockAt(x, 64, 0);
+        Object[] contents = new Object[SLOTS];
+        for (int i = 0; i < SLOTS; i++) contents[i] = new StackStandIn("minecraft:cobblestone", 64);
+        return (Inventory) Proxy.newProxyInstance(Inventory.class.getClassLoader(), new Class<?>[] {Inventory.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getType": return type;
+                        case "getHolder": return snapshot(state, block, contents);
+                        case "getLocation": return new Location(world, x, 64, 0);
+                        case "getSize": return SLOTS;
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static BlockState snapshot(Class<? extends BlockState> state, Block block, Object[] contents) {
+        // Block states are copied by saving and loading their contents, one compound per stack
+        Object[] copy = new Object[contents.length];
+        for (int i = 0; i < contents.length; i++) {
+            StackStandIn stack = (StackStandIn) contents[i];
+            Map<String, Object> saved = new HashMap<>();
+            saved.put("Slot", (byte) i);
+            saved.put("id", stack.id);
+            saved.put("Count", (byte) stack.count);
+            copy[i] = new StackStandIn((String) saved.get("id"), (Byte) saved.get("Count"));
+        }
+        return (BlockState) Proxy.newProxyInstance(state.getClassLoader(), new Class<?>[] {state},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getBlock")) return block;
+                    if (method.getName().equals("getInventory")) return copy;
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * World whose blocks are created once, so only the cost of
+     * finding them is measured
+     */
+    private static class BlockWorld implements java.lang.reflect.InvocationHandler {
+
+        private final Map<Integer, Block> blocks = new HashMap<>();
+
+        @Override
+        public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getName": return "world";
+                case "getBlockAt":
+                    int x = args.length == 1 ? ((Location) args[0]).getBlockX() : (Integer) args[0];
+                    return blocks.computeIfAbsent(x, k -> (Block) Proxy.newProxyInstance(Block.class.getClassLoader(),
+                            new Class<?>[] {Block.class}, (p, m, a) -> {
+                                throw new UnsupportedOperationException(m.getName());
+                            }));
+                default: throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+    }
+
+    private static class StackStandIn {
+
+        final String id;
+        final int count;
+
+        StackStandIn(String id, int count) {
+            this.id = id;
+            this.count = count;
+        }
+
+    }
+
+}
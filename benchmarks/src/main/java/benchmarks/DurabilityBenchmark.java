@@ -0,0 +1,106 @@
+package benchmarks;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.*;
+import storage.AtomicFile;
+import storage.Journal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many changes and region writes the writer
+ * thread sustains at each Storage.syncIntervalMillis setting:
+ * -1 leaves syncing to the operating system, 0 forces every
+ * change to disk and 1000 shares one fsync per second. Results
+ * depend heavily on the disk, run on the server's own hardware
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DurabilityBenchmark {
+
+    private static final int CHANGES = 1024;
+
+    @Param({"-1", "0", "1000"})
+    public int syncIntervalMillis;
+
+    @Param({"1000"})
+    public int protections; // Within a single region
+
+    private String saved;
+    private File regionFile;
+    private File journalFile;
+    private Journal journal;
+    private String[] records;
+    private int cursor;
+    private long nextSync;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        String owner = new UUID(random.nextLong(), random.nextLong()).toString();
+
+        YamlConfiguration region = new YamlConfiguration();
+        for (int i = 0; i < protections; i++) {
+            int x = random.nextInt(512), y = random.nextInt(256), z = random.nextInt(512);
+            region.set((x >> 4) + "," + (z >> 4) + "." + x + "," + y + "," + z, Collections.singletonList(owner));
+        }
+        saved = region.saveToString();
+        regionFile = File.createTempFile("eagleeye", ".yml");
+
+        records = new String[CHANGES];
+        for (int i = 0; i < CHANGES; i++)
+            records[i] = "P\tworld:" + random.nextInt(512) + ":" + random.nextInt(256) + ":" + random.nextInt(512) +
+                    "\t" + owner;
+        journalFile = File.createTempFile("eagleeye", ".journal");
+        journal = new Journal(journalFile, syncIntervalMillis == 0);
+        nextSync = System.nanoTime();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        if (!journalFile.delete() || !regionFile.delete()) throw new IOException("Failed to delete temporary files");
+    }
+
+    /**
+     * Journals a change, syncing whenever the interval that
+     * ProtectedConfig's timer would use has passed
+     */
+    @Benchmark
+    public void journalAppend() throws IOException {
+        journal.append(records[cursor = (cursor + 1) & (CHANGES - 1)]);
+        if (syncIntervalMillis > 0 && System.nanoTime() - nextSync >= 0) {
+            journal.sync();
+            nextSync = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        }
+        if (journal.size() >= 1000) journal.reset(); // Storage.compactAfterChanges
+    }
+
+    /**
+     * Replaces a region file through a temporary file, synced
+     * unless syncing is left to the operating system
+     */
+    @Benchmark
+    public long regionSave() throws IOException { return AtomicFile.write(regionFile, saved, syncIntervalMillis >= 0); }
+
+    /**
+     * Overwrites a region file in place as before, which a crash
+     * can leave truncated
+     */
+    @Benchmark
+    public void regionOverwrite() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(regionFile)) {
+            out.write(saved.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package benchmarks;
+
+import index.ProtectionIndex;
+import index.TransferCache;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.DoubleChestInventory;
+import org.bukkit.inventory.Inventory;
+import org.openjdk.jmh.annotations.*;
+import types.Access;
+import types.Owners;
+
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates thousands of active hoppers pulling from chests,
+ * some of them double, comparing a decision made from the index
+ * on every transfer against the transfer decision cache. Both
+ * run the decision Guard makes, through stand-in inventories
+ * that locate their blocks the way CraftBukkit's do
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HopperBenchmark {
+
+    @Param({"1000", "10000"})
+    public int hoppers;
+
+    @Param({"16384", "65536"})
+    public int cacheSize; // Hoppers.cacheSize
+
+    private StatusBenchmark.Lookup lookup;
+    private TransferCache transfers;
+    private Inventory[] chests; // Chest above each hopper
+    private Inventory[] below; // Hopper under each chest
+    private int cursor;
+
+    /**
+     * Places a hopper under each chest, protecting some chests
+     * and some hoppers with the same or another owner
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        UUID[] players = new UUID[hoppers / 10 + 1];
+        for (int i = 0; i < players.length; i++) players[i] = new UUID(random.nextLong(), random.nextLong());
+
+        World world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[] {World.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getName": return "world";
+                        case "getBlockAt": return block((World) proxy, (Location) args[0]); // New block each time
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        ProtectionIndex<Owners> index = new ProtectionIndex<>();
+        lookup = new StatusBenchmark.Lookup(index);
+        transfers = new TransferCache(cacheSize);
+        chests = new Inventory[hoppers];
+        below = new Inventory[hoppers];
+        for (int i = 0; i < hoppers; i++) {
+            int x = random.nextInt(4000) - 2000, y = 1 + random.nextInt(250), z = random.nextInt(4000) - 2000;
+            boolean isDouble = random.nextInt(100) < 20;
+            chests[i] = isDouble ? doubleChest(world, x, y, z) : inventory(world, InventoryType.CHEST, x, y, z);
+            below[i] = inventory(world, InventoryType.HOPPER, x, y - 1, z);
+
+            // Protected chests are fed by hoppers of the same owner or by a thief
+            if (random.nextInt(100) < 30) {
+                Owners owner = Owners.of(players[random.nextInt(players.length)]);
+                index.put("world", x, y, z, owner);
+                if (isDouble && random.nextBoolean()) index.put("world", x + 1, y, z, owner);
+                index.put("world", x, y - 1, z, random.nextInt(100) < 80 ? owner :
+                        Owners.of(players[random.nextInt(players.length)]));
+            }
+        }
+
+        // Hoppers run their first transfer before measuring
+        for (int i = 0; i < hoppers; i++) cached();
+    }
+
+    @Benchmark
+    public boolean uncached() {
+        int i = next();
+        return Access.mayMove(lookup, chests[i], below[i]);
+    }
+
+    @Benchmark
+    public boolean cached() {
+        int i = next();
+        return Access.mayTransfer(transfers, lookup, chests[i], below[i]);
+    }
+
+    private int next() {
+        // Hoppers transfer in turn, as they do every 8 ticks
+        if (++cursor == hoppers) cursor = 0;
+        return cursor;
+    }
+
+    private static Inventory inventory(World world, InventoryType type, int x, int y, int z) {
+        return (Inventory) Proxy.newProxyInstance(Inventory.class.getClassLoader(), new Class<?>[] {Inventory.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getType": return type;
+                        case "getLocation": return new Location(world, x, y, z); // New location each time
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static Inventory doubleChest(World world, int x, int y, int z) {
+        // Right side is one block east of left side
+        Inventory left = inventory(world, InventoryType.CHEST, x, y, z);
+        Inventory right = inventory(world, InventoryType.CHEST, x + 1, y, z);
+        return (Inventory) Proxy.newProxyInstance(DoubleChestInventory.class.getClassLoader(),
+                new Class<?>[] {DoubleChestInventory.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getType": return InventoryType.CHEST;
+                        case "getLeftSide": return left;
+                        case "getRightSide": return right;
+                        case "getLocation": return new Location(world, x + 0.5, y, z);
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static Block block(World world, Location location) {
+        int x = location.getBlockX(), y = location.getBlockY(), z = location.getBlockZ();
+        return (Block) Proxy.newProxyInstance(Block.class.getClassLoader(), new Class<?>[] {Block.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getWorld": return world;
+                        case "getX": return x;
+                        case "getY": return y;
+                        case "getZ": return z;
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+}
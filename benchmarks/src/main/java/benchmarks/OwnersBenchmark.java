@@ -0,0 +1,157 @@
+package benchmarks;
+
+import index.ProtectionIndex;
+import org.openjdk.jmh.annotations.*;
+import types.Owners;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares interned owners against the previous owners, which
+ * held a HashSet of UUIDs per protection along with a reference
+ * to the Mojang API
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseParallelGC")
+public class OwnersBenchmark {
+
+    private static final int PROTECTIONS = 1000000;
+    private static final int PLAYERS = 2000;
+    private static final int LOOKUPS = 1024;
+
+    private UUID[] players;
+    private LegacyOwners[] legacy;
+    private Owners[] interned;
+    private UUID[] checks;
+    private int cursor;
+
+    /**
+     * Creates owners of sample protections along with players
+     * to check against them
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        players = randomPlayers(random);
+        legacy = new LegacyOwners[LOOKUPS];
+        interned = new Owners[LOOKUPS];
+        checks = new UUID[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            List<UUID> owners = randomOwners(random, players);
+            legacy[i] = new LegacyOwners(owners, this);
+            interned[i] = Owners.of(owners);
+            checks[i] = copy(random.nextBoolean() ? owners.get(0) : players[random.nextInt(PLAYERS)]);
+        }
+    }
+
+    @Benchmark
+    public boolean legacyContains() {
+        int i = next();
+        return legacy[i].contains(checks[i]);
+    }
+
+    @Benchmark
+    public boolean internedContains() {
+        int i = next();
+        return interned[i].contains(checks[i]);
+    }
+
+    @Benchmark
+    public Owners internedOf() {
+        int i = next();
+        return Owners.of(checks[i]);
+    }
+
+    private int next() { return cursor = (cursor + 1) & (LOOKUPS - 1); }
+
+    /**
+     * Prints retained heap of 1M protections held in the index
+     * with each representation, run with
+     * java -cp benchmarks.jar benchmarks.OwnersBenchmark
+     * @param args Unused
+     */
+    public static void main(String[] args) {
+        Object api = new Object();
+
+        long before = usedHeap();
+        ProtectionIndex<Object> index = fill(owners -> new LegacyOwners(owners, api));
+        long legacyBytes = usedHeap() - before;
+        System.out.printf("%d protections: HashSet owners %d bytes/protection%n",
+                index.size(), legacyBytes / index.size());
+
+        index = null;
+        before = usedHeap();
+        index = fill(Owners::of);
+        long internedBytes = usedHeap() - before;
+        System.out.printf("%d protections: interned owners %d bytes/protection, %d distinct sets%n",
+                index.size(), internedBytes / index.size(), Owners.internedCount());
+    }
+
+    private static ProtectionIndex<Object> fill(java.util.function.Function<List<UUID>, Object> factory) {
+        Random random = new Random(42);
+        UUID[] players = randomPlayers(random);
+        ProtectionIndex<Object> index = new ProtectionIndex<>();
+
+        // Each player's protections are clustered around their base
+        while (index.size() < PROTECTIONS) {
+            int base = random.nextInt(PLAYERS);
+            List<UUID> owners = randomOwners(random, players);
+            owners.set(0, players[base]);
+            for (int i = 0; i < 16; i++) {
+                // Owners are read from region files, one UUID instance per protection
+                List<UUID> read = new ArrayList<>();
+                for (UUID owner: owners) read.add(copy(owner));
+                index.put("world", (base % 64) * 256 + random.nextInt(48), random.nextInt(256),
+                        (base / 64) * 256 + random.nextInt(48), factory.apply(read));
+            }
+        }
+        return index;
+    }
+
+    private static UUID[] randomPlayers(Random random) {
+        UUID[] players = new UUID[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) players[i] = new UUID(random.nextLong(), random.nextLong());
+        return players;
+    }
+
+    private static List<UUID> randomOwners(Random random, UUID[] players) {
+        // 95% of protections have a single owner
+        List<UUID> owners = new ArrayList<>();
+        owners.add(players[random.nextInt(PLAYERS)]);
+        if (random.nextInt(100) >= 95)
+            for (int extra = 1 + random.nextInt(2); extra > 0; extra--)
+                owners.add(players[random.nextInt(PLAYERS)]);
+        return owners;
+    }
+
+    private static UUID copy(UUID uuid) { return new UUID(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()); }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
+
+/**
+ * Owners as they were held before interning
+ */
+class LegacyOwners {
+
+    private final Set<UUID> uuids;
+    final Object api;
+
+    LegacyOwners(Collection<UUID> uuids, Object api) {
+        this.uuids = Collections.unmodifiableSet(new HashSet<>(uuids));
+        this.api = api;
+    }
+
+    boolean contains(UUID uuid) { return uuids.contains(uuid); }
+
+}
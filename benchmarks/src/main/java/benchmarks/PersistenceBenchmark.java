@@ -0,0 +1,127 @@
+package benchmarks;
+
+import metrics.Histogram;
+import org.openjdk.jmh.annotations.*;
+import storage.RegionFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures what ProtectedConfig spends on the writer thread,
+ * through the same region files it writes to a temporary
+ * folder: putting a change, including the compaction every
+ * compactAfter changes, writing a changed region on its own and
+ * reading a region file when one of its chunks loads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    private static final int CHANGES = 1024;
+    private static final int SPREAD = 1024; // Blocks along each side, covering 2x2 regions
+
+    @Param({"1000", "10000"})
+    public int protections;
+
+    @Param({"1000"})
+    public int compactAfter; // Storage.compactAfterChanges
+
+    @Param({"1000"})
+    public int syncIntervalMillis; // Storage.syncIntervalMillis
+
+    private Path folder;
+    private RegionFiles files;
+    private List<String> owners;
+    private int[] changes; // x, y, z of each change
+    private int cursor;
+
+    /**
+     * Fills region files of two worlds with protections, then
+     * keeps one chunk of each region of the first loaded as
+     * players around them would
+     */
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        owners = Collections.singletonList(new UUID(random.nextLong(), random.nextLong()).toString());
+        folder = Files.createTempDirectory("eagleeye");
+        files = new RegionFiles(folder.toFile(), new File(folder.toFile(), "protected.journal"), compactAfter,
+                syncIntervalMillis, new Histogram());
+        for (String world: new String[] {"world", "world_nether"})
+            for (int i = 0; i < protections; i++)
+                files.set(world + ":" + random.nextInt(SPREAD) + ":" + random.nextInt(256) + ":" +
+                        random.nextInt(SPREAD), owners);
+        files.compact(); // Leaves no region in memory
+
+        for (int regionX = 0; regionX < SPREAD >> 9; regionX++)
+            for (int regionZ = 0; regionZ < SPREAD >> 9; regionZ++)
+                files.loadChunk("world", regionX << 5, regionZ << 5, (world, x, y, z, o) -> {});
+
+        changes = new int[CHANGES * 3];
+        for (int i = 0; i < CHANGES * 3; i += 3) {
+            changes[i] = random.nextInt(SPREAD);
+            changes[i + 1] = random.nextInt(256);
+            changes[i + 2] = random.nextInt(SPREAD);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        files.close();
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path: (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(path);
+        }
+    }
+
+    /**
+     * Puts a change the way ProtectedConfig does, folding the
+     * journal into region files once enough have accumulated
+     */
+    @Benchmark
+    public void put() throws IOException {
+        int c = next();
+        files.write("world", changes[c], changes[c + 1], changes[c + 2], owners);
+        if (files.shouldCompact()) files.compact();
+    }
+
+    /**
+     * Writes the region of a single change, as a compaction does
+     * for each region changed since the last one
+     */
+    @Benchmark
+    public void compact() throws IOException {
+        int c = next();
+        files.write("world", changes[c], changes[c + 1], changes[c + 2], owners);
+        files.compact();
+    }
+
+    /**
+     * Reads a region file as a chunk of a region not yet in
+     * memory loads, then evicts it as the chunk unloads
+     */
+    @Benchmark
+    public int loadChunk() throws IOException {
+        int c = next(), chunkX = changes[c] >> 4, chunkZ = changes[c + 2] >> 4;
+        int[] read = {0};
+        files.loadChunk("world_nether", chunkX, chunkZ, (world, x, y, z, o) -> read[0]++);
+        files.unloadChunk("world_nether", chunkX, chunkZ);
+        return read[0];
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (CHANGES - 1);
+        return cursor * 3;
+    }
+
+}
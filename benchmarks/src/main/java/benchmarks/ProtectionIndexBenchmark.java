@@ -0,0 +1,206 @@
+package benchmarks;
+
+import index.ProtectionIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the chunk sharded protection index against the
+ * previous HashMap keyed on Bukkit blocks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProtectionIndexBenchmark {
+
+    private static final int LOOKUPS = 1024;
+    private static final int PER_BASE = 32;
+
+    @Param({"100000", "1000000"})
+    public int protections;
+
+    private HashMap<StandInBlock, Object> legacy;
+    private ProtectionIndex<Object> index;
+    private StandInBlock[] hits;
+    private StandInBlock[] misses;
+    private int cursor;
+
+    /**
+     * Fills both structures with the same random protections
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        StandInWorld world = new StandInWorld("world");
+        Object owners = new Object();
+
+        // Protections are clustered around player bases
+        int[][] bases = new int[protections / PER_BASE][];
+        for (int i = 0; i < bases.length; i++)
+            bases[i] = new int[] {random.nextInt(20000) - 10000, random.nextInt(20000) - 10000};
+
+        legacy = new HashMap<>();
+        index = new ProtectionIndex<>();
+        while (index.size() < protections) {
+            int[] base = bases[random.nextInt(bases.length)];
+            StandInBlock b = new StandInBlock(world,
+                    base[0] + random.nextInt(48) - 24, random.nextInt(256), base[1] + random.nextInt(48) - 24);
+            legacy.put(b, owners);
+            index.put(b.world.name, b.getX(), b.getY(), b.getZ(), owners);
+        }
+
+        // Lookups are made with fresh block instances, as they are in events
+        StandInBlock[] all = legacy.keySet().toArray(new StandInBlock[0]);
+        hits = new StandInBlock[LOOKUPS];
+        misses = new StandInBlock[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            StandInBlock b = all[random.nextInt(all.length)];
+            hits[i] = new StandInBlock(world, b.getX(), b.getY(), b.getZ());
+            StandInBlock m;
+            while (legacy.containsKey(m = randomBlock(random, world)));
+            misses[i] = m;
+        }
+    }
+
+    @Benchmark
+    public Object legacyHit() {
+        return legacy.get(hits[next()]);
+    }
+
+    @Benchmark
+    public Object legacyMiss() {
+        return legacy.get(misses[next()]);
+    }
+
+    @Benchmark
+    public Object indexHit() {
+        StandInBlock b = hits[next()];
+        return index.get(b.world.name, b.getX(), b.getY(), b.getZ());
+    }
+
+    @Benchmark
+    public Object indexMiss() {
+        StandInBlock b = misses[next()];
+        return index.get(b.world.name, b.getX(), b.getY(), b.getZ());
+    }
+
+    private int next() { return cursor = (cursor + 1) & (LOOKUPS - 1); }
+
+    private static StandInBlock randomBlock(Random random, StandInWorld world) {
+        // Anywhere in a 20,000 block square
+        return new StandInBlock(world, random.nextInt(20000) - 10000, random.nextInt(256), random.nextInt(20000) - 10000);
+    }
+
+    /**
+     * Prints retained heap of both structures, run with
+     * java -cp benchmarks.jar benchmarks.ProtectionIndexBenchmark
+     * @param args Unused
+     */
+    public static void main(String[] args) {
+        for (int count: new int[] {100000, 1000000}) {
+            ProtectionIndexBenchmark b = new ProtectionIndexBenchmark();
+            b.protections = count;
+
+            long before = usedHeap();
+            b.setup();
+            b.index = null;
+            long legacyBytes = usedHeap() - before;
+
+            b = new ProtectionIndexBenchmark();
+            b.protections = count;
+            b.setup();
+            b.legacy = null;
+            long indexBytes = usedHeap() - before;
+
+            System.out.printf("%d protections: HashMap %d bytes/protection, index %d bytes/protection%n",
+                    count, legacyBytes / count, indexBytes / count);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
+
+/**
+ * Stand-in for CraftWorld, hashed on its UUID
+ */
+class StandInWorld {
+
+    final String name;
+    private final UUID uid = UUID.randomUUID();
+
+    StandInWorld(String name) { this.name = name; }
+
+    @Override
+    public int hashCode() { return uid.hashCode(); }
+
+}
+
+/**
+ * Stand-in for CraftBlock, keeping the same layout of a world
+ * and a separate position object along with the same hashCode
+ * and equals behaviour
+ */
+class StandInBlock {
+
+    final StandInWorld world;
+    final StandInPosition position;
+
+    StandInBlock(StandInWorld world, int x, int y, int z) {
+        this.world = world;
+        this.position = new StandInPosition(x, y, z);
+    }
+
+    int getX() { return position.x; }
+
+    int getY() { return position.y; }
+
+    int getZ() { return position.z; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof StandInBlock)) return false;
+        StandInBlock b = (StandInBlock) o;
+        return b.position.equals(position) && b.world == world;
+    }
+
+    @Override
+    public int hashCode() { return position.hashCode() ^ world.hashCode(); }
+
+}
+
+/**
+ * Stand-in for BlockPosition
+ */
+class StandInPosition {
+
+    final int x, y, z;
+
+    StandInPosition(int x, int y, int z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof StandInPosition)) return false;
+        StandInPosition p = (StandInPosition) o;
+        return p.x == x && p.y == y && p.z == z;
+    }
+
+    @Override
+    public int hashCode() { return (y + z * 31) * 31 + x; }
+
+}
@@ -0,0 +1,41 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import types.Signs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares validating sign text with patterns compiled once
+ * against compiling them on every edit as was done before
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignBenchmark {
+
+    private static final String[][] SIGNS = {
+            {"@Notch", "", "", ""},
+            {"@ jeb_", "", "", ""},
+            {"Shop", "64 diamonds", "", ""},
+            {"@", "a_rather_long", "_name", ""}
+    };
+
+    private int cursor;
+
+    @Benchmark
+    public boolean legacy() {
+        String content = String.join("", next()).replaceAll("[\\s\\n\\r\\t]+", "");
+        return Pattern.compile("@{1}[a-zA-Z0-9_-]{3,16}").matcher(content).matches();
+    }
+
+    @Benchmark
+    public boolean precompiled() { return Signs.hasValidSyntax(next()); }
+
+    private String[] next() { return SIGNS[cursor = (cursor + 1) & (SIGNS.length - 1)]; }
+
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import storage.ProtectionDatabase;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what SqliteStore spends on the writer thread with
+ * a large database: committing a batch of changes and reading
+ * the protections of a chunk as it loads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqliteBenchmark {
+
+    private static final int SPREAD = 16384; // Blocks either side of spawn
+
+    @Param({"100000", "1000000"})
+    public int protections;
+
+    @Param({"1", "100"})
+    public int batch; // Changes queued before the writer catches up
+
+    @Param({"NORMAL"})
+    public String synchronous; // Follows Storage.syncIntervalMillis
+
+    private File file;
+    private ProtectionDatabase database;
+    private List<String> owners;
+    private Random random;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        random = new Random(42);
+        owners = Collections.singletonList(new UUID(random.nextLong(), random.nextLong()).toString());
+        file = File.createTempFile("eagleeye", ".db");
+        database = new ProtectionDatabase(file, synchronous);
+        for (int i = 0; i < protections; i++) {
+            database.put("world", random.nextInt(2 * SPREAD) - SPREAD, random.nextInt(256),
+                    random.nextInt(2 * SPREAD) - SPREAD, owners);
+            if (database.pending() >= 10000) database.commit();
+        }
+        database.commit();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        database.close();
+        for (String suffix: new String[] {"", "-wal", "-shm"}) {
+            File f = new File(file.getPath() + suffix);
+            if (f.exists() && !f.delete()) throw new IOException("Failed to delete " + f.getName());
+        }
+    }
+
+    @Benchmark
+    public int commit() throws SQLException {
+        for (int i = 0; i < batch; i++)
+            database.put("world", random.nextInt(2 * SPREAD) - SPREAD, random.nextInt(256),
+                    random.nextInt(2 * SPREAD) - SPREAD, owners);
+        return database.commit();
+    }
+
+    @Benchmark
+    public int readChunk() throws SQLException {
+        int[] read = {0};
+        database.readChunk("world", random.nextInt(2 * SPREAD >> 4) - (SPREAD >> 4),
+                random.nextInt(2 * SPREAD >> 4) - (SPREAD >> 4), (world, x, y, z, owners) -> read[0]++);
+        return read[0];
+    }
+
+}
@@ -0,0 +1,135 @@
+package benchmarks;
+
+import index.ProtectionIndex;
+import org.bukkit.permissions.ServerOperator;
+import org.openjdk.jmh.annotations.*;
+import types.Access;
+import types.GuardStatus;
+import types.Owners;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the decision Guard.statusOfBlock makes through
+ * Access.status whenever a player opens a container, for
+ * protected containers opened by an owner or another player
+ * and for unprotected ones
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatusBenchmark {
+
+    private static final int LOOKUPS = 1024;
+    private static final int PLAYERS = 2000;
+
+    @Param({"100000", "1000000"})
+    public int protections;
+
+    private ProtectionIndex<Owners> index;
+    private Access.Lookup lookup;
+    private ServerOperator opener; // Never op
+    private int[] owned; // x, y, z of protected containers
+    private int[] unowned; // x, y, z of unprotected containers
+    private UUID[] openers;
+    private int cursor;
+
+    /**
+     * Protects random containers, half of which are later opened
+     * by one of their owners
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        UUID[] players = new UUID[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) players[i] = new UUID(random.nextLong(), random.nextLong());
+
+        index = new ProtectionIndex<>();
+        lookup = new Lookup(index);
+        opener = new NotOp();
+        owned = new int[LOOKUPS * 3];
+        unowned = new int[LOOKUPS * 3];
+        openers = new UUID[LOOKUPS];
+        int sampled = 0;
+        while (index.size() < protections) {
+            int x = random.nextInt(20000) - 10000, y = random.nextInt(256), z = random.nextInt(20000) - 10000;
+            UUID owner = players[random.nextInt(PLAYERS)];
+            index.put("world", x, y, z, Owners.of(owner));
+            if (sampled < LOOKUPS && index.size() % (protections / LOOKUPS) == 0) {
+                owned[sampled * 3] = x;
+                owned[sampled * 3 + 1] = y;
+                owned[sampled * 3 + 2] = z;
+                // Openers hold their own UUID instance, as online players do
+                UUID opener = random.nextBoolean() ? owner : players[random.nextInt(PLAYERS)];
+                openers[sampled++] = new UUID(opener.getMostSignificantBits(), opener.getLeastSignificantBits());
+            }
+        }
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            int x, y, z;
+            do {
+                x = random.nextInt(20000) - 10000;
+                y = random.nextInt(256);
+                z = random.nextInt(20000) - 10000;
+            } while (index.get("world", x, y, z) != null);
+            unowned[i * 3] = x;
+            unowned[i * 3 + 1] = y;
+            unowned[i * 3 + 2] = z;
+        }
+    }
+
+    @Benchmark
+    public GuardStatus protectedContainer() {
+        int i = next();
+        return status(openers[i], owned[i * 3], owned[i * 3 + 1], owned[i * 3 + 2]);
+    }
+
+    @Benchmark
+    public GuardStatus unprotectedContainer() {
+        int i = next();
+        return status(openers[i], unowned[i * 3], unowned[i * 3 + 1], unowned[i * 3 + 2]);
+    }
+
+    private GuardStatus status(UUID player, int x, int y, int z) {
+        return Access.status(lookup, "world", x, y, z, player, opener);
+    }
+
+    private int next() { return cursor = (cursor + 1) & (LOOKUPS - 1); }
+
+    /**
+     * Protections of chunks that have all been read, as Guard
+     * sees them once the server has settled
+     */
+    static class Lookup implements Access.Lookup {
+
+        private final ProtectionIndex<Owners> index;
+
+        Lookup(ProtectionIndex<Owners> index) { this.index = index; }
+
+        @Override
+        public Owners get(String world, int x, int y, int z) { return index.get(world, x, y, z); }
+
+        @Override
+        public boolean isLoading(String world, int chunkX, int chunkZ) { return false; }
+
+    }
+
+    /**
+     * Player who is not op, as most players opening containers
+     */
+    static class NotOp implements ServerOperator {
+
+        @Override
+        public boolean isOp() { return false; }
+
+        @Override
+        public void setOp(boolean value) { throw new UnsupportedOperationException(); }
+
+    }
+
+}
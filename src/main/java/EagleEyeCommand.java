@@ -0,0 +1,138 @@
+import cache.ExpiringCache;
+import index.TransferCache;
+import metrics.Histogram;
+import metrics.Metrics;
+import mojang.Upstream;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handles /eagleeye, showing what the plugin costs the server
+ * with /eagleeye stats and where a player's protections are
+ * with /eagleeye owned
+ */
+class EagleEyeCommand implements CommandExecutor {
+
+    private static final int LISTED = 10; // Locations shown by /eagleeye owned
+
+    private EagleEyePlugin plugin;
+    private Guard guard;
+
+    /**
+     * Constructor used to register command
+     * @param plugin Main plugin
+     * @param guard Guard holding protections and lookups
+     */
+    EagleEyeCommand(EagleEyePlugin plugin, Guard guard) {
+        this.plugin = plugin;
+        this.guard = guard;
+    }
+
+    /**
+     * Called by Bukkit on the main thread when the command is
+     * used, permission has already been checked
+     * @param sender Player or console using command
+     * @param command Command being used
+     * @param label Alias used
+     * @param args Arguments following command
+     * @return Was usage correct
+     */
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            sendStats(sender);
+            return true;
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("owned")) {
+            sendOwned(sender, args[1]);
+            return true;
+        }
+        return false;
+    }
+
+    private void sendOwned(CommandSender sender, String username) {
+        MojangAPI api = guard.getApi();
+
+        // Owner is resolved, then their blocks found on the writer thread through the owner index
+        api.getUUIDAsync(username)
+                .thenComposeAsync(uuid -> guard.getGuarded().findOwned(uuid), api.mainThread())
+                .whenCompleteAsync((owned, error) -> {
+                    if (error != null) {
+                        sender.sendMessage(plugin.prefix + ChatColor.RED + "Failed to find " + ChatColor.YELLOW +
+                                username);
+                        return;
+                    }
+                    if (owned == null) {
+                        sender.sendMessage(plugin.prefix + ChatColor.RED + "Protections can only be found by owner " +
+                                "when Storage.type is sqlite");
+                        return;
+                    }
+
+                    sender.sendMessage(plugin.prefix + ChatColor.YELLOW + username + ChatColor.GREEN + " owns " +
+                            ChatColor.WHITE + owned.size() + ChatColor.GREEN + " protected blocks");
+                    for (String location: owned.subList(0, Math.min(owned.size(), LISTED)))
+                        sender.sendMessage(ChatColor.YELLOW + "  " + location.replace(':', ' '));
+                    if (owned.size() > LISTED)
+                        sender.sendMessage(ChatColor.GRAY + "  and " + (owned.size() - LISTED) + " more");
+                }, api.mainThread());
+    }
+
+    private void sendStats(CommandSender sender) {
+        Metrics metrics = plugin.getMetrics();
+        MojangAPI api = guard.getApi();
+        GuardMap guarded = guard.getGuarded();
+
+        // Timers that have recorded anything, sorted by name
+        sender.sendMessage(plugin.prefix + ChatColor.GREEN + "Timings " + ChatColor.GRAY + "(count, p50, p99, max)");
+        for (Map.Entry<String, Histogram> timer: metrics.timers().entrySet()) {
+            Histogram.Snapshot s = timer.getValue().snapshot();
+            if (s.count() == 0) continue;
+            sender.sendMessage(ChatColor.YELLOW + "  " + timer.getKey() + ChatColor.WHITE + " " + s.count() + ", " +
+                    Histogram.format(s.percentile(0.5)) + ", " + Histogram.format(s.percentile(0.99)) + ", " +
+                    Histogram.format(s.max()));
+        }
+
+        // Share of lookups answered without going further
+        long lookups = metrics.timer("guard.lookup").snapshot().count();
+        TransferCache transfers = guarded.getTransfers();
+        sender.sendMessage(plugin.prefix + ChatColor.GREEN + "Caches " + ChatColor.WHITE +
+                "UUIDs " + ratio(api.getUUIDCache()) + ", usernames " + ratio(api.getUsernameCache()) +
+                ", unknown " + (api.getUnknownCache() == null ? "off" : ratio(api.getUnknownCache())) +
+                ", hoppers " + ratio(transfers.hits(), transfers.misses()));
+        sender.sendMessage(plugin.prefix + ChatColor.GREEN + "Lookups " + ChatColor.WHITE +
+                "memory " + api.getTierHits(MojangAPI.Tier.MEMORY) + ", server " + api.getTierHits(MojangAPI.Tier.SERVER) +
+                ", disk " + api.getTierHits(MojangAPI.Tier.DISK) + ", Mojang " + api.getTierHits(MojangAPI.Tier.NETWORK) +
+                ", stale " + api.getStaleServed());
+
+        Upstream upstream = api.getUpstream();
+        sender.sendMessage(plugin.prefix + ChatColor.GREEN + "Mojang " + ChatColor.WHITE +
+                upstream.requests() + " requests, " + upstream.failures() + " failed, " + upstream.rateLimited() +
+                " rate limited, " + upstream.rejected() + " refused, breaker " + upstream.breaker().state());
+
+        sender.sendMessage(plugin.prefix + ChatColor.GREEN + "Pending " + ChatColor.WHITE +
+                guarded.pendingWrites() + " writes, " + api.pending() + " lookups, " +
+                guard.openViews() + " open inventories");
+
+        // Stored protections are counted on the writer thread, so this line follows once known
+        int loaded = guarded.size();
+        long bytes = guarded.estimateBytes();
+        String checks = percent(metrics.counter("guard.protected").sum(), lookups);
+        guarded.countStored().thenAcceptAsync(stored -> sender.sendMessage(plugin.prefix + ChatColor.GREEN +
+                "Protections " + ChatColor.WHITE + (stored == null ? "" : stored + " stored, ") + loaded +
+                " loaded, ~" + (bytes + 1023) / 1024 + " KB, " + checks + " of checks protected"), api.mainThread());
+    }
+
+    private String ratio(ExpiringCache<?, ?> cache) { return ratio(cache.hits(), cache.misses()); }
+
+    private String ratio(long hits, long misses) { return percent(hits, hits + misses) + " hits"; }
+
+    private String percent(long part, long total) {
+        return total == 0 ? "-" : String.format("%.1f%%", part * 100.0 / total);
+    }
+
+}
@@ -1,15 +1,29 @@
+import metrics.Histogram;
+import metrics.Metrics;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.block.*;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
-import org.bukkit.inventory.*;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 import types.InventoryMaterials;
 import types.Signs;
 
@@ -22,6 +36,23 @@ public class EagleEyeEvents implements Listener {
     private EagleEyePlugin plugin;
     private Guard guard;
     private boolean updateQueued = false;
+    private final Histogram playerJoin;
+    private final Histogram wallSignPlace;
+    private final Histogram signChange;
+    private final Histogram inventoryOpen;
+    private final Histogram inventoryClick;
+    private final Histogram inventoryDrag;
+    private final Histogram inventoryClose;
+    private final Histogram inventoryMoveItem;
+    private final Histogram blockBreak;
+    private final Histogram entityExplode;
+    private final Histogram blockExplode;
+    private final Histogram blockPistonExtend;
+    private final Histogram blockPistonRetract;
+    private final Histogram blockBurn;
+    private final Histogram entityChangeBlock;
+    private final Histogram chunkLoad;
+    private final Histogram chunkUnload;
 
     /**
      * Initializes event listener class
@@ -30,6 +61,26 @@ public class EagleEyeEvents implements Listener {
     public EagleEyeEvents(EagleEyePlugin plugin) {
         this.plugin = plugin;
         this.guard = new Guard(this.plugin);
+
+        // Time spent in each handler, shown by /eagleeye stats
+        Metrics metrics = plugin.getMetrics();
+        playerJoin = metrics.timer("events.playerJoin");
+        wallSignPlace = metrics.timer("events.wallSignPlace");
+        signChange = metrics.timer("events.signChange");
+        inventoryOpen = metrics.timer("events.inventoryOpen");
+        inventoryClick = metrics.timer("events.inventoryClick");
+        inventoryDrag = metrics.timer("events.inventoryDrag");
+        inventoryClose = metrics.timer("events.inventoryClose");
+        inventoryMoveItem = metrics.timer("events.inventoryMoveItem");
+        blockBreak = metrics.timer("events.blockBreak");
+        entityExplode = metrics.timer("events.entityExplode");
+        blockExplode = metrics.timer("events.blockExplode");
+        blockPistonExtend = metrics.timer("events.blockPistonExtend");
+        blockPistonRetract = metrics.timer("events.blockPistonRetract");
+        blockBurn = metrics.timer("events.blockBurn");
+        entityChangeBlock = metrics.timer("events.entityChangeBlock");
+        chunkLoad = metrics.timer("events.chunkLoad");
+        chunkUnload = metrics.timer("events.chunkUnload");
     }
 
     /**
@@ -38,6 +89,7 @@ public class EagleEyeEvents implements Listener {
      */
     @EventHandler
     public void onPlayerJoinEvent(PlayerJoinEvent e) {
+        long start = System.nanoTime();
 
         // Cache username and UUID
         guard.getApi().cache(e.getPlayer().getName(), e.getPlayer().getUniqueId());
@@ -45,6 +97,7 @@ public class EagleEyeEvents implements Listener {
         // Check for plugin update
         Bukkit.getScheduler().runTaskAsynchronously(plugin, new UpdaterRunnable(plugin, e.getPlayer(), this));
 
+        playerJoin.recordSince(start);
     }
 
     /**
@@ -53,6 +106,7 @@ public class EagleEyeEvents implements Listener {
      */
     @EventHandler
     public void onWallSignPlaceEvent(BlockPlaceEvent e) {
+        long start = System.nanoTime();
         Player p = e.getPlayer(); // Player that triggered event
 
         // If Player is placing a WALL_SIGN on a protectable item
@@ -60,6 +114,7 @@ public class EagleEyeEvents implements Listener {
             // Set temporary metadata and wait for SignChangeEvent
             e.getBlock().setMetadata("protect", new ProtectableMeta(p, e.getBlockAgainst()));
 
+        wallSignPlace.recordSince(start);
     }
 
     /**
@@ -70,6 +125,7 @@ public class EagleEyeEvents implements Listener {
      */
     @EventHandler
     public void onSignChangeEvent(SignChangeEvent e) {
+        long start = System.nanoTime();
         Player p = e.getPlayer();
         Sign sign = (Sign) e.getBlock().getState();
 
@@ -107,6 +163,30 @@ public class EagleEyeEvents implements Listener {
 
         }
 
+        signChange.recordSince(start);
+    }
+
+    /**
+     * Enforces ownership check once as an inventory opens
+     * @param e Triggered when a player opens an inventory
+     */
+    @EventHandler(ignoreCancelled = true)
+    public void onInventoryOpenEvent(InventoryOpenEvent e) {
+        long start = System.nanoTime();
+        guard.handleInventoryOpenEvent(e);
+        inventoryOpen.recordSince(start);
+    }
+
+    /**
+     * Keeps ownership check of an inventory that has opened,
+     * once every other plugin has had the chance to cancel it
+     * @param e Triggered when a player opens an inventory
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryOpenedEvent(InventoryOpenEvent e) {
+        long start = System.nanoTime();
+        guard.handleInventoryOpened(e);
+        inventoryOpen.recordSince(start);
     }
 
     /**
@@ -117,47 +197,46 @@ public class EagleEyeEvents implements Listener {
      */
     @EventHandler
     public void onInventoryClickEvent(InventoryClickEvent e) {
+        long start = System.nanoTime();
+        guard.handleInventoryInteractEvent(e);
+        inventoryClick.recordSince(start);
+    }
 
-        // Only continue is Player triggered event
-        if (!(e.getWhoClicked() instanceof Player)) return;
-        Player p = (Player) e.getWhoClicked();
-
-        // Inventories
-        Inventory i = e.getInventory();
-        InventoryHolder h = i.getHolder();
-
-        // Inventory types
-        if (h instanceof Chest) {
-            guard.handleInventoryClickEvent(((Chest) h).getBlock(), e);
-        } else if (h instanceof DoubleChest) {
-            guard.handleInventoryClickEvent(((Chest) ((DoubleChest) h).getLeftSide()).getBlock(), e);
-            guard.handleInventoryClickEvent(((Chest) ((DoubleChest) h).getRightSide()).getBlock(), e);
-        } else if (h instanceof Furnace) {
-            guard.handleInventoryClickEvent(((Furnace) h).getBlock(), e);
-        } else if (h instanceof Hopper) {
-            guard.handleInventoryClickEvent(((Hopper) h).getBlock(), e);
-        } else if (h instanceof Dispenser) {
-            guard.handleInventoryClickEvent(((Dispenser) h).getBlock(), e);
-        } else if (h instanceof Barrel) {
-            guard.handleInventoryClickEvent(((Barrel) h).getBlock(), e);
-        } else if (h instanceof Dropper) {
-            guard.handleInventoryClickEvent(((Dropper) h).getBlock(), e);
-        /*} else if (i instanceof StonecutterInventory) {
-            Block b = Bukkit.getWorld(i.getLocation().getWorld().getName()).getBlockAt(i.getLocation()); // Doesn't work
-            guard.handleInventoryClickEvent(p, b, e);*/
-        } else if (i instanceof LoomInventory) {
-            Block b = Bukkit.getWorld(i.getLocation().getWorld().getName()).getBlockAt(i.getLocation());
-            guard.handleInventoryClickEvent(b, e);
-        /*} else if (i instanceof CartographyInventory) {
-            Block b = Bukkit.getWorld(i.getLocation().getWorld().getName()).getBlockAt(i.getLocation()); // Doesn't work
-            guard.handleInventoryClickEvent(p, b, e);*/
-        } else if (i instanceof GrindstoneInventory) {
-            Block b = Bukkit.getWorld(i.getLocation().getWorld().getName()).getBlockAt(i.getLocation());
-            guard.handleInventoryClickEvent(b, e);
-        }
+    /**
+     * Enforces ownership check before items can be dragged
+     * across the inventory
+     * @param e Triggered when a player drags items while on the
+     *          inventory view
+     */
+    @EventHandler
+    public void onInventoryDragEvent(InventoryDragEvent e) {
+        long start = System.nanoTime();
+        guard.handleInventoryInteractEvent(e);
+        inventoryDrag.recordSince(start);
+    }
 
-        // TODO: Add doors, pressure plates, buttons?
+    /**
+     * Forgets ownership check of an inventory as it closes
+     * @param e Triggered when an inventory view is closed
+     */
+    @EventHandler
+    public void onInventoryCloseEvent(InventoryCloseEvent e) {
+        long start = System.nanoTime();
+        guard.handleInventoryCloseEvent(e);
+        inventoryClose.recordSince(start);
+    }
 
+    /**
+     * Stops hoppers and other blocks taking items out of
+     * protected inventories
+     * @param e Triggered whenever items move between two
+     *          inventories without a player
+     */
+    @EventHandler
+    public void onInventoryMoveItemEvent(InventoryMoveItemEvent e) {
+        long start = System.nanoTime();
+        guard.handleInventoryMoveItemEvent(e);
+        inventoryMoveItem.recordSince(start);
     }
 
     /**
@@ -168,10 +247,112 @@ public class EagleEyeEvents implements Listener {
      */
     @EventHandler
     public void onBlockBreakEvent(BlockBreakEvent e) {
+        long start = System.nanoTime();
         guard.handleBlockBreakEvent(e);
+        blockBreak.recordSince(start);
     }
 
-    // TODO: Deal with explosions
+    /**
+     * Stops creepers, TNT and other entities blowing up
+     * protected blocks
+     * @param e Triggered when an entity explodes
+     */
+    @EventHandler
+    public void onEntityExplodeEvent(EntityExplodeEvent e) {
+        long start = System.nanoTime();
+        guard.handleExplosion(e.blockList());
+        entityExplode.recordSince(start);
+    }
+
+    /**
+     * Stops beds used outside the overworld and other blocks blowing up
+     * protected blocks
+     * @param e Triggered when a block explodes
+     */
+    @EventHandler
+    public void onBlockExplodeEvent(BlockExplodeEvent e) {
+        long start = System.nanoTime();
+        guard.handleExplosion(e.blockList());
+        blockExplode.recordSince(start);
+    }
+
+    /**
+     * Stops pistons pushing protected blocks
+     * @param e Triggered when a piston extends
+     */
+    @EventHandler
+    public void onBlockPistonExtendEvent(BlockPistonExtendEvent e) {
+        long start = System.nanoTime();
+        if (guard.isAnyGuarded(e.getBlocks())) e.setCancelled(true);
+        blockPistonExtend.recordSince(start);
+    }
+
+    /**
+     * Stops sticky pistons pulling protected blocks
+     * @param e Triggered when a piston retracts
+     */
+    @EventHandler
+    public void onBlockPistonRetractEvent(BlockPistonRetractEvent e) {
+        long start = System.nanoTime();
+        if (guard.isAnyGuarded(e.getBlocks())) e.setCancelled(true);
+        blockPistonRetract.recordSince(start);
+    }
+
+    /**
+     * Stops fire destroying protected blocks
+     * @param e Triggered when fire burns a block away
+     */
+    @EventHandler
+    public void onBlockBurnEvent(BlockBurnEvent e) {
+        long start = System.nanoTime();
+        if (guard.isGuarded(e.getBlock())) e.setCancelled(true);
+        blockBurn.recordSince(start);
+    }
+
+    /**
+     * Stops endermen, withers and other entities changing
+     * protected blocks
+     * @param e Triggered when an entity changes a block
+     */
+    @EventHandler
+    public void onEntityChangeBlockEvent(EntityChangeBlockEvent e) {
+        long start = System.nanoTime();
+        if (guard.isGuarded(e.getBlock())) e.setCancelled(true);
+        entityChangeBlock.recordSince(start);
+    }
+
+    /**
+     * Reads protections of a chunk as it loads
+     * @param e Triggered when a chunk is loaded
+     */
+    @EventHandler
+    public void onChunkLoadEvent(ChunkLoadEvent e) {
+        long start = System.nanoTime();
+        guard.loadChunk(e.getChunk());
+        chunkLoad.recordSince(start);
+    }
+
+    /**
+     * Evicts protections of a chunk as it unloads
+     * @param e Triggered when a chunk is unloaded
+     */
+    @EventHandler
+    public void onChunkUnloadEvent(ChunkUnloadEvent e) {
+        long start = System.nanoTime();
+        guard.unloadChunk(e.getChunk());
+        chunkUnload.recordSince(start);
+    }
+
+    /**
+     * Saves any pending changes, called when plugin is disabled
+     */
+    void close() { guard.close(); }
+
+    /**
+     * Returns guard shared by every handler
+     * @return Guard
+     */
+    Guard getGuard() { return guard; }
 
     /**
      * Returns if an update is queued
@@ -1,8 +1,15 @@
+import metrics.Metrics;
+import metrics.PrometheusExporter;
+import mojang.NameLookup;
+import mojang.ProfileBatcher;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 
 /**
  * Main class called by Bukkit/Spigot/Paper to initialize
@@ -11,6 +18,9 @@ import java.io.File;
 public class EagleEyePlugin extends JavaPlugin {
 
     private String pluginName;
+    private EagleEyeEvents events;
+    private Metrics metrics = new Metrics();
+    private PrometheusExporter exporter;
     public String prefix;
 
     /**
@@ -38,15 +48,26 @@ public class EagleEyePlugin extends JavaPlugin {
         this.setupConfigFile();
 
         // Register event triggers
-        this.getServer().getPluginManager().registerEvents(new EagleEyeEvents(this), this);
+        events = new EagleEyeEvents(this);
+        this.getServer().getPluginManager().registerEvents(events, this);
+
+        // Register commands
+        PluginCommand command = getCommand("eagleeye");
+        if (command != null) command.setExecutor(new EagleEyeCommand(this, events.getGuard()));
+
+        // Serve metrics for Prometheus if enabled
+        if (getConfig().getBoolean("Metrics.prometheus.enabled")) this.startExporter();
 
     }
 
     /**
-     * Announces deactivation when plugin is disabled
+     * Saves pending changes and announces deactivation
+     * when plugin is disabled
      */
     @Override
     public void onDisable() {
+        if (exporter != null) exporter.stop();
+        if (events != null) events.close();
         Bukkit.getLogger().info(prefix + ChatColor.RED + "Deactivated");
     }
 
@@ -56,6 +77,12 @@ public class EagleEyePlugin extends JavaPlugin {
      */
     File getPluginFile() { return this.getFile(); }
 
+    /**
+     * Returns timers and counters shared by every part of the plugin
+     * @return Plugin metrics
+     */
+    Metrics getMetrics() { return metrics; }
+
     private void setupConfigFile() {
 
         this.createFolder();
@@ -63,11 +90,45 @@ public class EagleEyePlugin extends JavaPlugin {
         getConfig().options().header("Caching is used to store usernames and UUIDs (1 week by default)");
         getConfig().addDefault("Caching.enabled", true);
         getConfig().addDefault("Caching.expiryInMinutes", 604800);
+        getConfig().addDefault("Caching.maxEntries", 10000);
+        getConfig().addDefault("Caching.persistent", true);
+        getConfig().addDefault("Caching.unknownExpiryInSeconds", 300);
+        getConfig().addDefault("Caching.unknownMaxEntries", 1000);
+        getConfig().addDefault("Caching.serverMaxAgeInDays", 37);
+        getConfig().addDefault("Mojang.profilesUrl", ProfileBatcher.PROFILES_URL);
+        getConfig().addDefault("Mojang.namesUrl", NameLookup.PROFILE_URL);
+        getConfig().addDefault("Mojang.batchWindowMillis", 50);
+        getConfig().addDefault("Mojang.requestsPerMinute", 300);
+        getConfig().addDefault("Mojang.burst", 20);
+        getConfig().addDefault("Mojang.failureThreshold", 5);
+        getConfig().addDefault("Mojang.backoffMillis", 1000);
+        getConfig().addDefault("Mojang.maxBackoffMillis", 300000);
         getConfig().addDefault("AutoUpdate.enabled", true);
+        getConfig().addDefault("Storage.type", "yaml");
+        getConfig().addDefault("Storage.compactAfterChanges", 1000);
+        getConfig().addDefault("Storage.syncIntervalMillis", 1000);
+        getConfig().addDefault("Hoppers.cacheSize", 16384);
+        getConfig().addDefault("Metrics.prometheus.enabled", false);
+        getConfig().addDefault("Metrics.prometheus.host", "127.0.0.1");
+        getConfig().addDefault("Metrics.prometheus.port", 9225);
         saveConfig();
 
     }
 
+    private void startExporter() {
+        String host = getConfig().getString("Metrics.prometheus.host");
+        int port = getConfig().getInt("Metrics.prometheus.port");
+        try {
+            exporter = new PrometheusExporter(metrics, new InetSocketAddress(host, port));
+            exporter.start();
+            events.getGuard().startPublishing();
+            Bukkit.getLogger().info(prefix + ChatColor.GREEN + "Serving metrics on " + host + ":" + port + "/metrics");
+        } catch (IOException | IllegalArgumentException e) {
+            Bukkit.getLogger().info(prefix + ChatColor.RED + "Failed to serve metrics on " + host + ":" + port);
+            e.printStackTrace();
+        }
+    }
+
     private void createFolder() {
         // Create folder for data
         if (!getDataFolder().exists()) {
@@ -1,14 +1,32 @@
-import me.kbrewster.exceptions.APIException;
+import index.LongObjectMap;
+import index.ProtectionIndex;
+import index.TransferCache;
+import metrics.Histogram;
+import metrics.LabelledGauge;
+import metrics.Metrics;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.block.Block;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.*;
 import org.bukkit.entity.Player;
 import org.bukkit.event.block.BlockBreakEvent;
-import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryInteractEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.inventory.InventoryView;
+import trace.Trace;
+import types.Access;
+import types.Containers;
+import types.GuardStatus;
+import types.Owners;
 
-import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Deals with all protection related interactions
@@ -18,6 +36,13 @@ public class Guard {
     private EagleEyePlugin plugin;
     private GuardMap guarded;
     private MojangAPI api;
+    private int[] explodedChunks = new int[32]; // Pairs of chunk X and Z, reused by every explosion
+    private IdentityHashMap<InventoryView, ViewAccess> views = new IdentityHashMap<>(); // Open inventories
+    private InventoryView opening; // Allowed to open, kept once no other plugin cancels it
+    private ViewAccess openingAccess;
+    private LabelledGauge protections;
+    private AtomicLong protectionBytes = new AtomicLong(), openViews = new AtomicLong();
+    private AtomicLong hopperHits = new AtomicLong(), hopperMisses = new AtomicLong();
 
     /**
      * Constructor used to prepare guard
@@ -26,99 +51,109 @@ public class Guard {
     Guard(EagleEyePlugin plugin) {
         this.plugin = plugin;
         this.api = new MojangAPI(plugin);
-        this.guarded = new GuardMap(plugin, api);
+        this.guarded = new GuardMap(plugin);
+
+        // Main thread state is copied for exporters, once one has started
+        Metrics metrics = plugin.getMetrics();
+        protections = metrics.labelled("protections", "world");
+        metrics.gauge("protections.bytes", protectionBytes::get);
+        metrics.gauge("guard.openViews", openViews::get);
+        metrics.counter("hoppers.hits", hopperHits::get);
+        metrics.counter("hoppers.misses", hopperMisses::get);
     }
 
     /**
-     * Asynchronously adds unprotected block to guard
+     * Asynchronously resolves owner and queues protection of
+     * an unprotected block
      * @param player Player placing wall sign
      * @param username Username of owner to add
      * @param block Block to assign owner to
      */
     void guardNew(Player player, String username, Block block) {
+        Owners current = guarded.get(block); // Taken on main thread
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            try {
-                // Verify user
-                UUID uuid = api.getUUID(username);
-
-                // Add first owner
-                Owners o = new Owners(uuid, api);
-                guarded.put(block, o);
-                player.sendMessage(plugin.prefix + ChatColor.GREEN + "Now protected by " + ChatColor.YELLOW + o);
-
-            } catch (IOException | APIException e) {
+        // Verify user
+        api.getUUIDAsync(username).whenComplete((uuid, error) -> {
+            if (error != null) {
                 player.sendMessage(plugin.prefix + ChatColor.RED + "Failed to put " + ChatColor.YELLOW + username);
+                return;
             }
+
+            // Add first owner
+            propose(player, block, current, Owners.of(uuid), ChatColor.GREEN + "Now protected by ");
         });
 
     }
 
     /**
-     * Asynchronously adds/removes owner from block
+     * Asynchronously resolves owner and queues adding or
+     * removing them from block
      * @param player Player placing wall sign
      * @param username Username of owner
      * @param block Block to assign or un-assign owner to or from
      */
     void guardExisting(Player player, String username, Block block) {
+        Owners current = guarded.get(block); // Taken on main thread
+        String type = block.getType().name().toLowerCase();
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            try {
-                // Verify third party user
-                UUID playerOfInterest = api.getUUID(username);
-
-                // If player exists in owners
-                if (guarded.get(block).contains(playerOfInterest)) {
-
-                    // Player of interest is the current player or the player is an Op
-                    if (playerOfInterest.equals(player.getUniqueId()) || player.isOp())
-                        remove(player, block); // Remove player
+        // Verify third party user, continuing on main thread to check online players
+        api.getUUIDAsync(username).whenCompleteAsync((playerOfInterest, error) -> {
+            if (error != null) {
+                player.sendMessage(plugin.prefix + ChatColor.RED + "Failed to put " + ChatColor.YELLOW + username);
+                return;
+            }
 
-                } else {
+            // If player exists in owners
+            if (current.contains(playerOfInterest)) {
 
-                    // Player wants to put another owner
-                    Owners o = guarded.get(block);
+                // Player of interest is the current player or the player is an Op
+                if (playerOfInterest.equals(player.getUniqueId()) || player.isOp())
+                    remove(player, block, current, playerOfInterest, type); // Remove player
 
-                    // Check if player of interest is online or player is Op
-                    if (Bukkit.getServer().getPlayer(playerOfInterest) != null || player.isOp()) {
-                        o.add(playerOfInterest);
-                        guarded.put(block, o);
-                        player.sendMessage(plugin.prefix + ChatColor.GREEN + "Now protected by " + ChatColor.YELLOW + o);
-                    } else {
-                        player.sendMessage(plugin.prefix + ChatColor.YELLOW + username + ChatColor.RED + " must be online");
-                    }
+            } else {
 
-                }
+                // Check if player of interest is online or player is Op
+                if (Bukkit.getServer().getPlayer(playerOfInterest) != null || player.isOp())
+                    propose(player, block, current, current.with(playerOfInterest), ChatColor.GREEN + "Now protected by ");
+                else
+                    player.sendMessage(plugin.prefix + ChatColor.YELLOW + username + ChatColor.RED + " must be online");
 
-            } catch (IOException | APIException e) {
-                player.sendMessage(plugin.prefix + ChatColor.RED + "Failed to put " + ChatColor.YELLOW + username);
             }
-        });
+        }, api.mainThread());
 
     }
 
-    private void remove(Player player, Block block) {
-        Owners owners;
+    private void remove(Player player, Block block, Owners current, UUID owner, String type) {
 
         // If there are multiple owners
-        if ((owners = guarded.get(block)).hasMulti()) {
+        if (current.hasMulti()) {
 
             // Remove the one
-            owners.remove(player.getUniqueId());
-            guarded.put(block, owners);
-            player.sendMessage(plugin.prefix + ChatColor.GREEN + "Now only protected by " + ChatColor.YELLOW + owners);
+            propose(player, block, current, current.without(owner), ChatColor.GREEN + "Now only protected by ");
 
         } else { // Single owner
 
             // Remove block from list
-            guarded.remove(block);
-            String type = block.getType().name().toLowerCase();
-            player.sendMessage(plugin.prefix + ChatColor.RED + "This " + type + " is no longer protected");
+            guarded.submit(new OwnershipChange(block, current, null, player,
+                    plugin.prefix + ChatColor.RED + "This " + type + " is no longer protected"));
 
         }
 
     }
 
+    private void propose(Player player, Block block, Owners current, Owners updated, String message) {
+        // Owner names are looked up without blocking before the change is queued
+        api.getNamesAsync(updated.getUUIDs()).thenAccept(names ->
+                guarded.submit(new OwnershipChange(block, current, updated, player,
+                        plugin.prefix + message + ChatColor.YELLOW + names)));
+    }
+
+    private void tellOwners(Player player, Owners owners, String message) {
+        // Message is sent on the main thread once names are known
+        api.getNamesAsync(owners.getUUIDs()).thenAcceptAsync(names ->
+                player.sendMessage(plugin.prefix + message + ChatColor.YELLOW + names), api.mainThread());
+    }
+
     /**
      * Deal with non-Op user attempting to take ownership
      * of an already assigned block
@@ -126,56 +161,132 @@ public class Guard {
      * @param block Block player is attempting to manipulate
      */
     void notifyUnavailable(Player player, Block block) {
+        if (guarded.isLoading(block)) { tellLoading(player); return; }
         Owners o = guarded.get(block);
-        player.sendMessage(plugin.prefix + ChatColor.RED + "Block is protected by " + ChatColor.YELLOW + o);
+        if (o != null) tellOwners(player, o, ChatColor.RED + "Block is protected by ");
     }
 
     /**
-     * Returns status of block in relation to player
+     * Returns status of block in relation to player. Blocks in
+     * chunks still being read are unavailable to everyone
      * @param player Player requesting status
      * @param block Block to get status of
      * @return Enum representing availability
      */
     GuardStatus statusOfBlock(Player player, Block block) {
-        Owners owners;
-
-        // If block owned by a player
-        if ((owners = guarded.get(block)) != null) {
-            // If current player is an owner or is Op
-            if (owners.contains(player.getUniqueId()) || player.isOp())
-                return GuardStatus.GUARDED;
-            else
-                return GuardStatus.UNAVAILABLE;
+        Object trace = Trace.beginGuardCheck();
+        String world = block.getWorld().getName();
+        GuardStatus status = Access.status(guarded, world, block.getX(), block.getY(), block.getZ(),
+                player.getUniqueId(), player);
+
+        if (trace != null) {
+            // Owners are only counted while recording
+            Owners owners = guarded.get(block);
+            Trace.endGuardCheck(trace, world, block.getX(), block.getY(), block.getZ(),
+                    owners == null ? 0 : owners.size(), status.name());
         }
+        return status;
 
-        // No one owns block
-        return GuardStatus.AVAILABLE;
+    }
+
+    /**
+     * Decides once whether a player may use an inventory as it
+     * opens. An allowed decision is only kept with the view
+     * once the open goes ahead, so clicks and drags only need
+     * to read it
+     * @param e Event triggered by player opening an inventory
+     */
+    void handleInventoryOpenEvent(InventoryOpenEvent e) {
+        if (!(e.getPlayer() instanceof Player)) return;
+        Player player = (Player) e.getPlayer();
+        List<Block> blocks = Containers.blocksOf(e.getInventory());
+        if (blocks.isEmpty()) return; // Not a protectable inventory
+
+        ViewAccess access = new ViewAccess(blocks);
+        Block denied = decide(player, access);
+        if (denied != null) {
+            e.setCancelled(true);
+            tellDenied(player, denied);
+        } else {
+            // Replaces any open since cancelled by another plugin
+            opening = e.getView();
+            openingAccess = access;
+        }
+    }
 
+    /**
+     * Keeps decision of an inventory that has opened until it
+     * closes. Cancelled opens are never closed, so must not
+     * reach here
+     * @param e Event triggered by player opening an inventory,
+     *          not cancelled by any plugin
+     */
+    void handleInventoryOpened(InventoryOpenEvent e) {
+        if (opening == e.getView()) views.put(opening, openingAccess);
+        opening = null;
+        openingAccess = null;
     }
 
     /**
-     * Deals with players manipulating inventories
-     * @param block Block containing inventory
-     * @param e Event triggered by player
+     * Deals with players clicking or dragging items in an
+     * inventory, using the decision made when it opened unless
+     * protections have changed since
+     * @param e Click or drag triggered by player
      */
-    void handleInventoryClickEvent(Block block, InventoryClickEvent e) {
+    void handleInventoryInteractEvent(InventoryInteractEvent e) {
+        if (!(e.getWhoClicked() instanceof Player)) return;
         Player player = (Player) e.getWhoClicked();
 
-        // Only cancel if guard deems necessary
-        if (statusOfBlock(player, block) == GuardStatus.UNAVAILABLE) {
-            String t = block.getType().name().toLowerCase(); // Block type
-            Owners o = guarded.get(block); // Owners
+        ViewAccess access = views.get(e.getView());
+        if (access == null) {
+            // Opened before the plugin was enabled
+            List<Block> blocks = Containers.blocksOf(e.getInventory());
+            if (blocks.isEmpty()) return;
+            views.put(e.getView(), access = new ViewAccess(blocks));
+        }
 
-            // Cancel event and kick player from inventory view
-            e.setCancelled(true);
-            player.closeInventory();
+        // Owners may have changed while inventory was open
+        if (access.version != guarded.getVersion()) {
+            boolean wasAllowed = access.allowed;
+            Block denied = decide(player, access);
+            if (denied != null && wasAllowed) tellDenied(player, denied);
+        }
 
-            // Send player message when Mojang API replies
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-                player.sendMessage(plugin.prefix + ChatColor.RED + "This " + t + " belongs to " + ChatColor.YELLOW + o);
-            });
+        if (!access.allowed) {
+            // Cancel event and kick player from inventory view once event is over
+            e.setCancelled(true);
+            Bukkit.getScheduler().runTask(plugin, player::closeInventory);
         }
+    }
 
+    /**
+     * Forgets decision of an inventory view that has closed
+     * @param e Event triggered by inventory closing
+     */
+    void handleInventoryCloseEvent(InventoryCloseEvent e) { views.remove(e.getView()); }
+
+    private Block decide(Player player, ViewAccess access) {
+        // Denied if any block, such as either side of a double chest, belongs to others
+        Block denied = null;
+        for (Block block: access.blocks)
+            if (statusOfBlock(player, block) == GuardStatus.UNAVAILABLE) {
+                denied = block;
+                break;
+            }
+        access.allowed = denied == null;
+        access.version = guarded.getVersion(); // Taken after any chunk was read in
+        return denied;
+    }
+
+    private void tellDenied(Player player, Block block) {
+        if (guarded.isLoading(block)) { tellLoading(player); return; }
+        String t = block.getType().name().toLowerCase(); // Block type
+        Owners o = guarded.get(block);
+        if (o != null) tellOwners(player, o, ChatColor.RED + "This " + t + " belongs to ");
+    }
+
+    private void tellLoading(Player player) {
+        player.sendMessage(plugin.prefix + ChatColor.RED + "Protections are still loading, please try again");
     }
 
     /**
@@ -183,30 +294,129 @@ public class Guard {
      * @param e Event triggered by player breaking block
      */
     void handleBlockBreakEvent(BlockBreakEvent e) {
-        Player player = e.getPlayer();
         Block block = e.getBlock();
+        Player player = e.getPlayer();
 
-        // Only cancel if guard deemed necessary
-        if (statusOfBlock(player, block) == GuardStatus.UNAVAILABLE) {
-            String t = block.getType().name().toLowerCase(); // Block type
-            Owners o = guarded.get(block); // Owners
+        switch (Access.breaking(block.getType(), guarded, block.getWorld().getName(), block.getX(), block.getY(),
+                block.getZ(), player.getUniqueId(), player)) {
+            case LOADING: // Owners not yet read
+                e.setCancelled(true);
+                tellLoading(player);
+                break;
+            case DENIED: // Only cancel if guard deemed necessary
+                e.setCancelled(true);
+                // Send player message when Mojang API replies
+                tellOwners(player, guarded.get(block), ChatColor.RED + "This " + typeOf(block) + " belongs to ");
+                break;
+            case UNPROTECTS:
+                // TODO: Allow config to decide if owners can break their block?
+                // Block is being broken and therefore unprotected
+                guarded.remove(block);
+                // Send player a message
+                player.sendMessage(plugin.prefix + ChatColor.RED + "This " + typeOf(block) + " is no longer protected");
+                break;
+        }
+
+    }
 
-            // Cancel event
+    private String typeOf(Block block) { return block.getType().name().toLowerCase(); }
+
+    /**
+     * Deals with hoppers and other blocks moving items between
+     * inventories. Items may only leave a protected inventory
+     * for one sharing an owner with it
+     * @param e Event triggered by items being moved
+     */
+    void handleInventoryMoveItemEvent(InventoryMoveItemEvent e) {
+        if (!Access.mayTransfer(guarded.getTransfers(), guarded, e.getSource(), e.getDestination()))
             e.setCancelled(true);
+    }
 
-            // Send player message when Mojang API replies
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-                player.sendMessage(plugin.prefix + ChatColor.RED + "This " + t + " belongs to " + ChatColor.YELLOW + o);
-            });
-        } else {
-            // TODO: Allow config to decide if owners can break their block?
-            // Block is being broken and therefore unprotected
-            guarded.remove(e.getBlock());
-            // Send player a message
-            String t = block.getType().name().toLowerCase(); // Block type
-            player.sendMessage(plugin.prefix + ChatColor.RED + "This " + t + " is no longer protected");
+    /**
+     * Checks if a block is protected, answering from a chunk
+     * check alone when its chunk holds no protection. Blocks in
+     * chunks still being read count as protected. Never
+     * allocates
+     * @param block Block about to be changed
+     * @return Is block protected
+     */
+    boolean isGuarded(Block block) {
+        String world = block.getWorld().getName();
+        int x = block.getX(), z = block.getZ();
+        return guarded.hasChunk(world, x >> 4, z >> 4) && guarded.isGuarded(world, x, block.getY(), z);
+    }
+
+    /**
+     * Checks if any of several blocks is protected, checking
+     * each chunk they cover only once in a row
+     * @param blocks Blocks about to be changed
+     * @return Is any block protected
+     */
+    boolean isAnyGuarded(List<Block> blocks) {
+        if (blocks.isEmpty()) return false;
+        String world = blocks.get(0).getWorld().getName();
+
+        // Pistons move a short line of blocks, usually within one chunk
+        int lastX = 0, lastZ = 0;
+        boolean checked = false, lastGuarded = false;
+        for (int i = 0; i < blocks.size(); i++) {
+            Block b = blocks.get(i);
+            int x = b.getX(), z = b.getZ();
+            if (!checked || x >> 4 != lastX || z >> 4 != lastZ) {
+                lastX = x >> 4;
+                lastZ = z >> 4;
+                lastGuarded = guarded.hasChunk(world, lastX, lastZ);
+                checked = true;
+            }
+            if (lastGuarded && guarded.isGuarded(world, x, b.getY(), z)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Keeps protected blocks out of an explosion, along with
+     * blocks of chunks still being read. Blocks are grouped by
+     * chunk first so the chunks without protections, which is
+     * nearly always all of them, cost a single lookup
+     * @param blocks Blocks about to be destroyed, filtered in place
+     */
+    void handleExplosion(List<Block> blocks) {
+        if (blocks.isEmpty()) return;
+        String world = blocks.get(0).getWorld().getName();
+
+        // Collect each chunk reached, neighbouring blocks usually share one
+        int chunks = 0;
+        for (Block b: blocks) {
+            int chunkX = b.getX() >> 4, chunkZ = b.getZ() >> 4;
+            if (indexOfChunk(chunks, chunkX, chunkZ) >= 0) continue;
+            if (chunks * 2 == explodedChunks.length) explodedChunks = Arrays.copyOf(explodedChunks, chunks * 4);
+            explodedChunks[chunks * 2] = chunkX;
+            explodedChunks[chunks * 2 + 1] = chunkZ;
+            chunks++;
         }
 
+        // Keep only chunks holding protections
+        int guardedChunks = 0;
+        for (int i = 0; i < chunks; i++) {
+            int chunkX = explodedChunks[i * 2], chunkZ = explodedChunks[i * 2 + 1];
+            if (!guarded.hasChunk(world, chunkX, chunkZ)) continue;
+            explodedChunks[guardedChunks * 2] = chunkX;
+            explodedChunks[guardedChunks * 2 + 1] = chunkZ;
+            guardedChunks++;
+        }
+        if (guardedChunks == 0) return;
+
+        // Single pass removing protected blocks
+        int count = guardedChunks;
+        blocks.removeIf(b -> indexOfChunk(count, b.getX() >> 4, b.getZ() >> 4) >= 0 &&
+                guarded.isGuarded(world, b.getX(), b.getY(), b.getZ()));
+    }
+
+    private int indexOfChunk(int chunks, int chunkX, int chunkZ) {
+        // Explosions reach a handful of chunks, so a scan beats hashing
+        for (int i = 0; i < chunks; i++)
+            if (explodedChunks[i * 2] == chunkX && explodedChunks[i * 2 + 1] == chunkZ) return i;
+        return -1;
     }
 
     /**
@@ -215,130 +425,404 @@ public class Guard {
      */
     MojangAPI getApi() { return api; }
 
+    /**
+     * Reads protections of a chunk that has loaded
+     * @param chunk Loaded chunk
+     */
+    void loadChunk(Chunk chunk) { guarded.load(chunk.getWorld().getName(), chunk.getX(), chunk.getZ()); }
+
+    /**
+     * Evicts protections of a chunk that has unloaded
+     * @param chunk Unloaded chunk
+     */
+    void unloadChunk(Chunk chunk) { guarded.unload(chunk.getWorld().getName(), chunk.getX(), chunk.getZ()); }
+
+    /**
+     * Gets protections in memory, only to be read from the main
+     * thread
+     * @return Protections of loaded chunks
+     */
+    GuardMap getGuarded() { return guarded; }
+
+    /**
+     * Gets number of open inventories being guarded
+     * @return Open inventory count
+     */
+    int openViews() { return views.size(); }
+
+    /**
+     * Starts copying main thread state into metrics every
+     * second, only needed once an exporter reads them from
+     * another thread
+     */
+    void startPublishing() { Bukkit.getScheduler().runTaskTimer(plugin, this::publish, 0, 20); }
+
+    private void publish() {
+        Map<String, Long> worlds = new HashMap<>();
+        guarded.sizeByWorld().forEach((world, size) -> worlds.put(world, (long) size));
+        protections.set(worlds);
+        protectionBytes.set(guarded.estimateBytes());
+        openViews.set(views.size());
+        hopperHits.set(guarded.getTransfers().hits());
+        hopperMisses.set(guarded.getTransfers().misses());
+    }
+
+    /**
+     * Saves any pending changes and stops lookups
+     */
+    void close() {
+        guarded.close();
+        api.close();
+    }
+
 }
 
 /**
  * Intermediary class used to handle manipulation of
- * data in memory and in yaml file
+ * data in memory and in the protection store. Only chunks that
+ * are loaded are held in memory. Chunks are read in the
+ * background and treated as guarded until read. Must only be
+ * used from the main thread, other threads submit changes
+ * which are committed on the next tick
  */
-class GuardMap {
+class GuardMap implements Access.Lookup {
 
-    private HashMap<Block, Owners> guarded = new HashMap<Block, Owners>();
-    private ProtectedConfig conf;
+    private EagleEyePlugin plugin;
+    private ProtectionIndex<Owners> guarded = new ProtectionIndex<>();
+    private TransferCache transfers;
+    private int version; // Changes whenever protections change
+    private HashMap<String, LongObjectMap<CompletableFuture<List<StoredProtection>>>> hydrating = new HashMap<>();
+    private int hydratingCount;
+    private ConcurrentLinkedQueue<OwnershipChange> changes = new ConcurrentLinkedQueue<>();
+    private ProtectionStore conf;
+    private Histogram lookups;
+    private LongAdder protectedLookups;
 
     /**
-     * Constructor creates yaml file instance
+     * Constructor creates region file instance and reads
+     * chunks loaded before the plugin was enabled
      * @param plugin Main plugin
-     * @param api API used when initially loading UUIDs
-     *            from yaml
      */
-    GuardMap(EagleEyePlugin plugin, MojangAPI api) {
-        this.conf = new ProtectedConfig(plugin, guarded, api);
+    GuardMap(EagleEyePlugin plugin) {
+        this.plugin = plugin;
+        this.transfers = new TransferCache(plugin.getConfig().getInt("Hoppers.cacheSize"));
+        this.conf = ProtectionStore.open(plugin);
+        this.lookups = plugin.getMetrics().timer("guard.lookup");
+        this.protectedLookups = plugin.getMetrics().counter("guard.protected");
+        for (World world: Bukkit.getWorlds())
+            for (Chunk chunk: world.getLoadedChunks())
+                load(world.getName(), chunk.getX(), chunk.getZ());
+
+        // Commit changes submitted by other threads every tick
+        Bukkit.getScheduler().runTaskTimer(plugin, this::commit, 1, 1);
     }
 
     /**
-     * Puts key (Block) with value (Owners) into HashMap
+     * Queues a change to be committed on the main thread,
+     * safe to call from any thread
+     * @param change Change of ownership
+     */
+    void submit(OwnershipChange change) { changes.add(change); }
+
+    /**
+     * Puts key (Block) with value (Owners) into index. Block
+     * must not be in a chunk still being read
      * @param block Block to assign owners to
      * @param owners New or modified list of owners
      */
     void put(Block block, Owners owners) {
-        guarded.put(block, owners);
+        String world = block.getWorld().getName();
+        guarded.put(world, block.getX(), block.getY(), block.getZ(), owners);
+        changed();
         conf.put(owners, block);
     }
 
     /**
-     * Removes key value pair from list completely
+     * Removes key value pair from list completely. Block must
+     * not be in a chunk still being read
      * @param block Block to make available
      */
     void remove(Block block) {
-        guarded.remove(block);
+        String world = block.getWorld().getName();
+        guarded.remove(world, block.getX(), block.getY(), block.getZ());
+        changed();
         conf.remove(block);
     }
 
     /**
-     * Gets associated value from Map
+     * Gets associated value from index
      * @param block Block of interest
-     * @return Associated owners
+     * @return Associated owners, always null while its chunk
+     *         is being read
      */
-    Owners get(Block block) { return guarded.get(block); }
+    Owners get(Block block) { return get(block.getWorld().getName(), block.getX(), block.getY(), block.getZ()); }
 
-}
+    /**
+     * Gets associated value from index by location
+     * @param world Name of world
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @return Associated owners, always null while its chunk
+     *         is being read
+     */
+    @Override
+    public Owners get(String world, int x, int y, int z) {
+        long start = System.nanoTime();
+        Owners owners = guarded.get(world, x, y, z);
+        if (owners != null) protectedLookups.increment();
+        lookups.recordSince(start);
+        return owners;
+    }
 
-/**
- * Handles a set of owners based on UUID
- */
-class Owners {
+    /**
+     * Checks if a block is protected or may be, as its chunk
+     * is still being read
+     * @param world Name of world
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @return Must block be left alone
+     */
+    boolean isGuarded(String world, int x, int y, int z) {
+        return isLoading(world, x >> 4, z >> 4) || get(world, x, y, z) != null;
+    }
 
-    HashSet<UUID> uuids = new HashSet<>();
-    MojangAPI api;
+    /**
+     * Checks if a chunk holds any protection or may, as it is
+     * still being read
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @return Does chunk hold a protection
+     */
+    boolean hasChunk(String world, int chunkX, int chunkZ) {
+        return guarded.hasChunk(world, chunkX, chunkZ) || isLoading(world, chunkX, chunkZ);
+    }
 
     /**
-     * Constructor used to create instance with initial owner
-     * @param uuid UUID of initial owner
-     * @param api Cached Mojang API
+     * Checks if protections of a block's chunk are still being
+     * read, in which case its owners are not yet known
+     * @param block Block of interest
+     * @return Is chunk being read
      */
-    Owners(UUID uuid, MojangAPI api) { this.uuids.add(uuid); this.api = api; }
+    boolean isLoading(Block block) {
+        return isLoading(block.getWorld().getName(), block.getX() >> 4, block.getZ() >> 4);
+    }
 
     /**
-     * Constructor used to create empty owner set
-     * @param api Cached Mojang API
+     * Checks if protections of a chunk are still being read
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @return Is chunk being read
      */
-    Owners(MojangAPI api) { this.api = api; }
+    @Override
+    public boolean isLoading(String world, int chunkX, int chunkZ) {
+        // Nearly always nothing is being read
+        if (hydratingCount == 0) return false;
+        LongObjectMap<CompletableFuture<List<StoredProtection>>> chunks = hydrating.get(world);
+        return chunks != null && chunks.get(ProtectionIndex.chunkKey(chunkX, chunkZ)) != null;
+    }
 
     /**
-     * Adds an additional owner
-     * @param uuid New additional owner
+     * Gets version of protections, which changes whenever a
+     * protection is added, removed, read in or dropped
+     * @return Protection version
      */
-    void add(UUID uuid) { uuids.add(uuid); }
+    int getVersion() { return version; }
 
     /**
-     * Removes existing owner
-     * @param uuid Owner to remove
+     * Gets cache of transfer decisions, which is cleared
+     * whenever protections change
+     * @return Transfer decision cache
      */
-    void remove(UUID uuid) { uuids.remove(uuid); }
+    TransferCache getTransfers() { return transfers; }
 
     /**
-     * Verifies if UUID is one of existing owners
-     * @param uuid UUID of player to check
-     * @return Is player an existing owner
+     * Starts reading protections of a chunk that has loaded,
+     * which is guarded until read
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
      */
-    boolean contains(UUID uuid) { return uuids.contains(uuid); }
+    void load(String world, int chunkX, int chunkZ) {
+        CompletableFuture<List<StoredProtection>> read = conf.loadChunk(world, chunkX, chunkZ);
+        LongObjectMap<CompletableFuture<List<StoredProtection>>> chunks = hydrating.get(world);
+        if (chunks == null) hydrating.put(world, chunks = new LongObjectMap<>());
+        if (chunks.put(ProtectionIndex.chunkKey(chunkX, chunkZ), read) == null) hydratingCount++;
+
+        // Move protections into index on main thread once read, never waiting for it here
+        read.thenRun(() -> Bukkit.getScheduler().runTask(plugin, () -> hydrate(world, chunkX, chunkZ, read)));
+    }
 
     /**
-     * Checks if there are multiple owners
-     * @return Is there more than one owner
+     * Drops protections of a chunk that has unloaded
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
      */
-    boolean hasMulti() { return uuids.size() > 1; }
+    void unload(String world, int chunkX, int chunkZ) {
+        LongObjectMap<CompletableFuture<List<StoredProtection>>> chunks = hydrating.get(world);
+        if (chunks != null && chunks.remove(ProtectionIndex.chunkKey(chunkX, chunkZ)) != null) hydratingCount--;
+        if (guarded.dropChunk(world, chunkX, chunkZ) > 0) changed();
+        conf.unloadChunk(world, chunkX, chunkZ);
+    }
 
     /**
-     * Gets owner UUID's as a List of Strings
-     * @return List of UUID's mapped to Strings
+     * Gets number of protections in loaded chunks
+     * @return Protection count
      */
-    List<String> asList() { return uuids.stream().map(UUID::toString).collect(Collectors.toList()); }
+    int size() { return guarded.size(); }
 
     /**
-     * Uses Mojang API to convert UUID to Username but returns
-     * the name "Someone" on failure
-     * @return Username or default to "Someone"
+     * Counts protections of each world in loaded chunks
+     * @return Protection count per world name
      */
-    @Override
-    public String toString() {
-        return uuids
-            .stream()
-            .map(x -> {
-                try {
-                    return api.getName(x);
-                } catch (IOException | APIException e) {
-                    return "Someone";
-                }
-            })
-            .collect(Collectors.joining(", "));
+    Map<String, Integer> sizeByWorld() { return guarded.sizeByWorld(); }
+
+    /**
+     * Estimates heap held by protections in loaded chunks
+     * @return Estimated bytes
+     */
+    long estimateBytes() { return guarded.estimateBytes(); }
+
+    /**
+     * Gets number of changes and chunk reads not yet done by
+     * the writer thread
+     * @return Pending task count
+     */
+    int pendingWrites() { return conf.pending(); }
+
+    /**
+     * Counts every protection kept by the protection store,
+     * loaded or not, without blocking
+     * @return Protection count once counted, or null if the
+     *         store cannot count them
+     */
+    CompletableFuture<Integer> countStored() { return conf.count(); }
+
+    /**
+     * Finds every block an owner holds through the protection
+     * store, loaded or not, without blocking
+     * @param owner Owner UUID
+     * @return Locations as world:x:y:z once found, or null if
+     *         the store cannot find them
+     */
+    CompletableFuture<List<String>> findOwned(UUID owner) { return conf.findOwned(owner); }
+
+    /**
+     * Commits changes still waiting for the next tick and saves
+     * every pending change to the protection store
+     */
+    void close() {
+        commit();
+        conf.close();
+    }
+
+    private void commit() {
+        OwnershipChange change;
+        while ((change = changes.poll()) != null) {
+
+            // Owners are unknown until chunk has been read again
+            if (isLoading(change.block)) {
+                change.player.sendMessage(plugin.prefix + ChatColor.RED + "Chunk is still loading, please try again");
+                continue;
+            }
+
+            // Chunk unloaded since change was prepared, so only its stored owners are changed
+            Block block = change.block;
+            if (!block.getWorld().isChunkLoaded(block.getX() >> 4, block.getZ() >> 4)) {
+                if (change.updated != null)
+                    conf.put(change.updated, block);
+                else
+                    conf.remove(block);
+                change.player.sendMessage(change.message);
+                continue;
+            }
+
+            // Reject change if owners were modified since it was prepared
+            if (get(change.block) != change.expected) {
+                change.player.sendMessage(plugin.prefix + ChatColor.RED + "Owners changed, please try again");
+                continue;
+            }
+
+            if (change.updated != null)
+                put(change.block, change.updated);
+            else
+                remove(change.block);
+            change.player.sendMessage(change.message);
+
+        }
+    }
+
+    private void changed() {
+        // Decisions based on previous protections no longer hold
+        transfers.invalidate();
+        version++;
+    }
+
+    private void hydrate(String world, int chunkX, int chunkZ, CompletableFuture<List<StoredProtection>> read) {
+        // Ignore reads of chunks that have since unloaded or already been hydrated
+        LongObjectMap<CompletableFuture<List<StoredProtection>>> chunks = hydrating.get(world);
+        long key = ProtectionIndex.chunkKey(chunkX, chunkZ);
+        if (chunks == null || chunks.get(key) != read) return;
+        chunks.remove(key);
+        hydratingCount--;
+
+        List<StoredProtection> protections = read.join(); // Already done, called once read
+        for (StoredProtection p: protections)
+            guarded.put(world, p.x, p.y, p.z, p.owners);
+        changed(); // Decisions taken while chunk was guarded no longer hold
     }
 
 }
 
-enum GuardStatus {
-    AVAILABLE, // No one owns block
-    UNAVAILABLE, // Another player owns the block
-    GUARDED, // Current player owns the block
-}
\ No newline at end of file
+/**
+ * Change of ownership prepared off the main thread. It is
+ * only committed if the block still has the owners the
+ * change was based on
+ */
+class OwnershipChange {
+
+    final Block block;
+    final Owners expected;
+    final Owners updated;
+    final Player player;
+    final String message;
+
+    /**
+     * Constructor used to describe a change
+     * @param block Block being changed
+     * @param expected Owners the change is based on
+     * @param updated New owners or null to remove protection
+     * @param player Player who requested the change
+     * @param message Message sent to player once committed
+     */
+    OwnershipChange(Block block, Owners expected, Owners updated, Player player, String message) {
+        this.block = block;
+        this.expected = expected;
+        this.updated = updated;
+        this.player = player;
+        this.message = message;
+    }
+
+}
+
+/**
+ * Decision on whether a player may use an open inventory,
+ * made again if protections change while it is open
+ */
+class ViewAccess {
+
+    final List<Block> blocks;
+    boolean allowed;
+    int version;
+
+    /**
+     * Constructor used before decision is made
+     * @param blocks Blocks holding inventory
+     */
+    ViewAccess(List<Block> blocks) { this.blocks = blocks; }
+
+}
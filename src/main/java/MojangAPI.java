@@ -1,184 +1,514 @@
-import me.kbrewster.exceptions.APIException;
+import cache.ExpiringCache;
+import cache.IdentityStore;
+import cache.NameIndex;
+import cache.UsernameCache;
+import metrics.Histogram;
+import metrics.Metrics;
+import mojang.*;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
+import trace.Trace;
 
+import java.io.File;
 import java.io.IOException;
-import java.sql.Timestamp;
-import java.time.Instant;
-import java.util.HashMap;
-import java.util.UUID;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
- * Caches all requests fulfilled by KevinPriv's
- * MojangAPI class
+ * Caches all requests fulfilled by the mojang clients, which
+ * resolve usernames in batches through ProfileBatcher and
+ * UUIDs through NameLookup, both behind a rate limited
+ * Upstream. Lookups run on a small bounded pool and
+ * concurrent lookups of the same key share one request.
+ * Lookups try memory, then players known to the server, then
+ * results kept on disk and only then Mojang API
  */
 class MojangAPI {
 
-    private HashMap<String, TimestampedUUID> uuidHashMap = new HashMap<>();
-    private HashMap<UUID, TimestampedUsername> usernameHashMap = new HashMap<>();
-    private int cacheExpiryInSeconds = 0; // 1 week caching by default
+    private EagleEyePlugin plugin;
+    private ExpiringCache<String, UUID> uuidCache;
+    private ExpiringCache<UUID, String> usernameCache;
+    private ExpiringCache<String, Boolean> unknownCache; // Null if negative caching is disabled
+    private UsernameCache usernames; // Answers from both caches above
+    private IdentityStore identities; // Null unless persistent caching is enabled
+    private NameIndex serverProfiles; // Players known to the server
+    private final LongAdder[] tierHits = new LongAdder[Tier.values().length];
+    private ProfileBatcher profiles;
+    private NameLookup names;
+    private Upstream upstream;
+    private final LongAdder staleServed = new LongAdder();
+    private long expiryInMillis;
+    private ConcurrentHashMap<String, CompletableFuture<UUID>> uuidRequests = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<UUID, CompletableFuture<String>> usernameRequests = new ConcurrentHashMap<>();
+    private boolean caching = false;
+    private final Executor mainThread;
+    private final Histogram uuidLookups, nameLookups; // Lookups that left memory
+    private final ThreadPoolExecutor io = new ThreadPoolExecutor(4, 4, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(512), r -> {
+                Thread t = new Thread(r, "EagleEye-Mojang");
+                t.setDaemon(true);
+                return t;
+            });
 
     /**
      * Constructor checks config and sets up caching accordingly
      * @param plugin Plugin used to check configs
      */
     MojangAPI(EagleEyePlugin plugin) {
-        if (plugin.getConfig().getBoolean("Caching.enabled"))
-            this.cacheExpiryInSeconds = plugin.getConfig().getInt("Caching.expiryInMinutes");
+        // Expiry has always been read as seconds, 1 week by default
+        long expiry = TimeUnit.SECONDS.toNanos(plugin.getConfig().getInt("Caching.expiryInMinutes"));
+        int maxEntries = plugin.getConfig().getInt("Caching.maxEntries");
+        this.caching = plugin.getConfig().getBoolean("Caching.enabled") && expiry > 0;
+        this.uuidCache = new ExpiringCache<>(maxEntries, expiry);
+        this.usernameCache = new ExpiringCache<>(maxEntries, expiry);
+        this.expiryInMillis = TimeUnit.NANOSECONDS.toMillis(expiry);
+
+        // Names Mojang reports as nonexistent are remembered briefly in a separate cache
+        long unknownExpiry = TimeUnit.SECONDS.toNanos(plugin.getConfig().getInt("Caching.unknownExpiryInSeconds"));
+        if (unknownExpiry > 0)
+            this.unknownCache = new ExpiringCache<>(plugin.getConfig().getInt("Caching.unknownMaxEntries"), unknownExpiry);
+        this.usernames = new UsernameCache(caching ? uuidCache : null, unknownCache);
+        this.plugin = plugin;
+        this.mainThread = r -> Bukkit.getScheduler().runTask(plugin, r);
+        io.allowCoreThreadTimeOut(true);
+
+        // Every request is rate limited and stopped while Mojang is failing
+        this.upstream = new Upstream(
+                new RateLimiter(plugin.getConfig().getInt("Mojang.requestsPerMinute"),
+                        plugin.getConfig().getInt("Mojang.burst")),
+                new CircuitBreaker(plugin.getConfig().getInt("Mojang.failureThreshold"),
+                        plugin.getConfig().getLong("Mojang.backoffMillis"),
+                        plugin.getConfig().getLong("Mojang.maxBackoffMillis"), this::breakerChanged),
+                5000);
+
+        // Usernames are resolved in batches through the bulk profile endpoint
+        this.profiles = new ProfileBatcher(profilesUrl(), upstream, plugin.getConfig().getLong("Mojang.batchWindowMillis"));
+        this.names = new NameLookup(plugin.getConfig().getString("Mojang.namesUrl"));
+
+        // Lookups reaching disk or Mojang are timed, then shared along with counters
+        this.uuidLookups = plugin.getMetrics().timer("mojang.uuid");
+        this.nameLookups = plugin.getMetrics().timer("mojang.name");
+        plugin.getMetrics().register("mojang.upstream", upstream.latency());
+        for (int i = 0; i < tierHits.length; i++) tierHits[i] = new LongAdder();
+        registerMetrics(plugin.getMetrics());
+
+        // Index players the server already knows, reading only names on the main thread
+        this.serverProfiles = new NameIndex(TimeUnit.DAYS.toMillis(plugin.getConfig().getInt("Caching.serverMaxAgeInDays")));
+        Map<UUID, String> names = new HashMap<>();
+        for (OfflinePlayer player: Bukkit.getOfflinePlayers())
+            if (player.getName() != null) names.put(player.getUniqueId(), player.getName());
+        File playerData = Bukkit.getWorlds().isEmpty() ? null :
+                new File(Bukkit.getWorlds().get(0).getWorldFolder(), "playerdata");
+        File userCache = new File(Bukkit.getWorldContainer(), "usercache.json");
+        try {
+            io.execute(() -> indexServerProfiles(names, playerData, userCache));
+        } catch (RejectedExecutionException ignored) {
+            // Lookups skip straight to the next tier
+        }
+
+        // Read on first lookup and written every 5 minutes
+        if (caching && plugin.getConfig().getBoolean("Caching.persistent")) {
+            identities = new IdentityStore(new File(plugin.getDataFolder(), "identities.dat"));
+            Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::saveIdentities, 6000, 6000);
+        }
     }
 
     /**
-     * Attempts to get UUID from cache if available, else
-     * sends a request to Mojang API
+     * Gets UUID from cache if available, else requests it from
+     * Mojang API without blocking. Concurrent requests for the
+     * same username share a single request
      * @param username Unique Minecraft username
-     * @return UUID of username
-     * @throws IOException Connection related error
-     * @throws APIException API threw error
+     * @return Future completed with UUID, or with an IOException
+     *         on failure
      */
-    UUID getUUID(String username) throws IOException, APIException {
+    CompletableFuture<UUID> getUUIDAsync(String username) {
 
-        // Check cache if enabled
-        TimestampedUUID timestampedUUID;
-        if (cacheExpiryInSeconds != 0 && (timestampedUUID = uuidHashMap.get(username)) != null) {
-            if (!timestampedUUID.hasExpired(cacheExpiryInSeconds))
-                return timestampedUUID.getUUID(); // Valid cache exists
-            else
-                uuidHashMap.remove(username); // Remove expired cache entry
+        // Usernames are case insensitive
+        String key = UsernameCache.key(username);
+
+        // Names that cannot exist or recently did not exist are answered locally
+        UUID cached = usernames.get(username, key);
+        if (cached == UsernameCache.UNKNOWN) {
+            CompletableFuture<UUID> unknown = new CompletableFuture<>();
+            unknown.completeExceptionally(new UnknownProfileException(username));
+            return unknown;
         }
 
-        // Request from Mojang
-        UUID uuid = me.kbrewster.mojangapi.MojangAPI.getUUID(username);
-        uuidHashMap.put(username, new TimestampedUUID(uuid));
-        return uuid;
+        // Check cache if enabled
+        Object trace = Trace.beginLookup("uuid", key);
+        if (cached != null)
+            return hit(Tier.MEMORY, cached, trace); // Valid cache exists
+
+        // Check players known to the server
+        if ((cached = serverProfiles.getUUID(key)) != null)
+            return hit(Tier.SERVER, cached, trace);
+
+        return singleFlight(uuidRequests, key, trace, uuidLookups, () -> {
+            long start = System.nanoTime();
+
+            // Check disk before Mojang
+            CompletableFuture<UUID> stored = identities == null ? CompletableFuture.completedFuture(null) : blocking(() -> {
+                IdentityStore.Entry<UUID> entry = identities.getUUID(key);
+                if (entry == null) return null;
+                uuidCache.put(key, entry.value, entry.remainingNanos());
+                tierHits[Tier.DISK.ordinal()].increment();
+                Trace.lookupSource(trace, "disk");
+                return entry.value;
+            });
+
+            // Request from Mojang as part of a batch
+            return orStale(stored.thenCompose(uuid -> uuid != null ? stored : profiles.resolve(username).thenApply(found -> {
+                tierHits[Tier.NETWORK.ordinal()].increment();
+                Trace.lookupSource(trace, "mojang");
+                if (caching) uuidCache.put(key, found);
+                if (identities != null) identities.putUUID(key, found, expiryInMillis);
+                return found;
+            })), uuidCache, key).whenComplete((uuid, error) -> {
+                uuidLookups.recordSince(start);
+                Trace.endLookup(trace, error);
+                if (unknownCache != null && error instanceof UnknownProfileException)
+                    unknownCache.put(key, Boolean.TRUE);
+            });
+        });
 
     }
 
     /**
-     * Attempts to get username from cache if available, else
-     * sends a request to Mojang API
+     * Gets username from cache if available, else requests it
+     * from Mojang API without blocking. Concurrent requests for
+     * the same UUID share a single request
      * @param uuid Unique Minecraft UUID
-     * @return Username associated with UUID
-     * @throws IOException Connection related error
-     * @throws APIException API threw error
+     * @return Future completed with username, or with an
+     *         IOException on failure
      */
-    String getName(UUID uuid) throws IOException, APIException {
+    CompletableFuture<String> getNameAsync(UUID uuid) {
 
-        // Cache cache if enabled
-        TimestampedUsername timestampedUsername;
-        if (cacheExpiryInSeconds != 0 && (timestampedUsername = usernameHashMap.get(uuid)) != null) {
-            if (!timestampedUsername.hasExpired(cacheExpiryInSeconds))
-                return timestampedUsername.getUsername(); // Valid cache exists
-            else
-                usernameHashMap.remove(uuid); // Remove expired cache entry
+        // Check cache if enabled
+        String cached;
+        Object trace = Trace.beginLookup("name", uuid);
+        if (caching && (cached = usernameCache.get(uuid)) != null)
+            return hit(Tier.MEMORY, cached, trace); // Valid cache exists
+
+        // Check players known to the server
+        if ((cached = serverProfiles.getUsername(uuid)) != null)
+            return hit(Tier.SERVER, cached, trace);
+
+        return singleFlight(usernameRequests, uuid, trace, nameLookups, () -> {
+            long start = System.nanoTime();
+            return orStale(blocking(() -> fetchName(uuid, trace)), usernameCache, uuid)
+                    .whenComplete((username, error) -> {
+                        nameLookups.recordSince(start);
+                        Trace.endLookup(trace, error);
+                    });
+        });
+
+    }
+
+    private String fetchName(UUID uuid, Object trace) throws Exception {
+        // Check disk before Mojang
+        IdentityStore.Entry<String> stored;
+        if (identities != null && (stored = identities.getUsername(uuid)) != null) {
+            usernameCache.put(uuid, stored.value, stored.remainingNanos());
+            tierHits[Tier.DISK.ordinal()].increment();
+            Trace.lookupSource(trace, "disk");
+            return stored.value;
         }
 
         // Request from Mojang
-        String username = me.kbrewster.mojangapi.MojangAPI.getUsername(uuid);
-        usernameHashMap.put(uuid, new TimestampedUsername(username));
+        String username = upstream.call(() -> names.fetch(uuid));
+        tierHits[Tier.NETWORK.ordinal()].increment();
+        Trace.lookupSource(trace, "mojang");
+        if (caching) usernameCache.put(uuid, username);
+        if (identities != null) identities.putUsername(uuid, username, expiryInMillis);
         return username;
+    }
 
+    /**
+     * Gets usernames of several players without blocking, using
+     * "Someone" for any that cannot be resolved
+     * @param uuids UUIDs of players
+     * @return Future completed with comma separated usernames
+     */
+    CompletableFuture<String> getNamesAsync(Collection<UUID> uuids) {
+        List<CompletableFuture<String>> names = new ArrayList<>(uuids.size());
+        for (UUID uuid: uuids)
+            names.add(getNameAsync(uuid).exceptionally(e -> "Someone"));
+
+        return CompletableFuture.allOf(names.toArray(new CompletableFuture[0]))
+                .thenApply(v -> names.stream().map(CompletableFuture::join).collect(Collectors.joining(", ")));
     }
 
     /**
-     * Used to manually cache a player
+     * Used to cache a player who has joined
      * @param username Username of player
      * @param uuid UUID of player
      */
     void cache(String username, UUID uuid) {
 
+        // Name exists now, even if it did not a moment ago
+        String key = UsernameCache.key(username);
+        if (unknownCache != null) unknownCache.invalidate(key);
+        serverProfiles.add(username, uuid, System.currentTimeMillis());
+
         // If caching disabled, return immediately
-        if (cacheExpiryInSeconds == 0) return;
+        if (!caching) return;
 
         // Cache username and uuid
-        uuidHashMap.put(username, new TimestampedUUID(uuid));
-        usernameHashMap.put(uuid, new TimestampedUsername(username));
-
-    }
+        uuidCache.put(key, uuid);
+        usernameCache.put(uuid, username);
 
-}
+        // Store on disk without touching the file from the calling thread
+        if (identities != null)
+            try {
+                io.execute(() -> {
+                    identities.putUUID(key, uuid, expiryInMillis);
+                    identities.putUsername(uuid, username, expiryInMillis);
+                });
+            } catch (RejectedExecutionException ignored) {
+                // Still cached in memory
+            }
 
-/**
- * Username with an associated timestamp created on construction
- */
-class TimestampedUsername {
+    }
 
-    private final Timestamp cachedAt;
-    private final String username;
+    /**
+     * Gets cache of username to UUID lookups
+     * @return UUID cache
+     */
+    ExpiringCache<String, UUID> getUUIDCache() { return uuidCache; }
 
     /**
-     * Constructor associated timestamp of current time to username
-     * @param username Username to cache
+     * Gets cache of UUID to username lookups
+     * @return Username cache
      */
-    TimestampedUsername(String username) {
-        this.cachedAt = Timestamp.from(Instant.now());
-        this.username = username;
-    }
+    ExpiringCache<UUID, String> getUsernameCache() { return usernameCache; }
 
     /**
-     * States whether the cached response is expired
-     * @param cacheExpiryInSeconds Expiry time
-     * @return True if expired and vice versa
+     * Gets number of disk lookups and Mojang requests queued or
+     * running in the background
+     * @return Pending task count
      */
-    boolean hasExpired(int cacheExpiryInSeconds) {
-        Timestamp now = Timestamp.from(Instant.now());
-        return (now.getTime() - (cacheExpiryInSeconds*1000)) > (cachedAt.getTime());
-    }
+    int pending() { return io.getQueue().size() + io.getActiveCount(); }
 
     /**
-     * Gets stored value
-     * @return Username
+     * Executor running callbacks on the server thread, for
+     * callbacks that touch Bukkit state
+     * @return Main thread executor
      */
-    String getUsername() { return username; }
+    Executor mainThread() { return mainThread; }
 
     /**
-     * Formatted data for debugging
-     * @return Formatted string representing instance
+     * Stops lookup threads and writes cache to disk
      */
-    @Override
-    public String toString() {
-        return String.format("[\"username\": \"%s\", \"expiry\": \"%s\"]", username, cachedAt.getTime());
+    void close() {
+        profiles.close();
+        io.shutdown();
+        try {
+            // Give queued disk writes a moment, in-flight requests are abandoned
+            if (!io.awaitTermination(2, TimeUnit.SECONDS)) io.shutdownNow();
+        } catch (InterruptedException e) {
+            io.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        saveIdentities();
+
+        // Report where lookups were answered from this session
+        Bukkit.getLogger().info(plugin.prefix + ChatColor.GREEN + "Lookups answered from memory " +
+                getTierHits(Tier.MEMORY) + ", server " + getTierHits(Tier.SERVER) + ", disk " +
+                getTierHits(Tier.DISK) + ", Mojang " + getTierHits(Tier.NETWORK));
     }
 
-}
+    private void registerMetrics(Metrics metrics) {
+        // Every source is thread safe, so exporters can read them from their own thread
+        metrics.counter("mojang.requests", upstream::requests);
+        metrics.counter("mojang.failures", upstream::failures);
+        metrics.counter("mojang.rateLimited", upstream::rateLimited);
+        metrics.counter("mojang.rejected", upstream::rejected);
+        metrics.counter("mojang.stale", staleServed::sum);
+        metrics.gauge("mojang.pending", this::pending);
+        metrics.gauge("mojang.breakerOpen", () -> upstream.breaker().state() == CircuitBreaker.State.CLOSED ? 0 : 1);
+        for (Tier tier: Tier.values())
+            metrics.counter("lookups." + tier.name().toLowerCase(Locale.ROOT), tierHits[tier.ordinal()]::sum);
+        registerCache(metrics, "cache.uuid", uuidCache);
+        registerCache(metrics, "cache.username", usernameCache);
+        if (unknownCache != null) registerCache(metrics, "cache.unknown", unknownCache);
+    }
 
-/**
- * UUID with an associated timestamp created on construction
- */
-class TimestampedUUID {
+    private void registerCache(Metrics metrics, String name, ExpiringCache<?, ?> cache) {
+        metrics.counter(name + ".hits", cache::hits);
+        metrics.counter(name + ".misses", cache::misses);
+        metrics.counter(name + ".evictions", cache::evictions);
+    }
+
+    private void saveIdentities() {
+        if (identities == null) return;
+        try {
+            identities.save();
+        } catch (IOException e) {
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to update identities.dat");
+            e.printStackTrace();
+        }
+    }
+
+    private <K, V> CompletableFuture<V> singleFlight(Map<K, CompletableFuture<V>> requests, K key, Object trace,
+                                                     Histogram lookups, Supplier<CompletableFuture<V>> start) {
 
-    private final Timestamp cachedAt;
-    private final UUID uuid;
+        // Join request already in flight, still timing and tracing this lookup as bursts are made of these
+        CompletableFuture<V> request = new CompletableFuture<>();
+        CompletableFuture<V> existing = requests.putIfAbsent(key, request);
+        if (existing != null) {
+            long joined = System.nanoTime();
+            Trace.lookupSource(trace, "coalesced");
+            existing.whenComplete((value, error) -> {
+                lookups.recordSince(joined);
+                Trace.endLookup(trace, error);
+            });
+            return existing;
+        }
+
+        // Forget request once it completes so later lookups go to cache
+        start.get().whenComplete((value, error) -> {
+            requests.remove(key, request);
+            if (error != null)
+                request.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            else
+                request.complete(value);
+        });
+        return request;
+
+    }
 
     /**
-     * Constructor associated timestamp of current time to username
-     * @param uuid UUID to cache
+     * Gets gate all Mojang API requests pass through
+     * @return Upstream with limiter and breaker state
      */
-    TimestampedUUID(UUID uuid) {
-        this.cachedAt = Timestamp.from(Instant.now());
-        this.uuid = uuid;
-    }
+    Upstream getUpstream() { return upstream; }
+
+    /**
+     * Gets cache of usernames Mojang reported as nonexistent
+     * @return Unknown username cache or null if disabled
+     */
+    ExpiringCache<String, Boolean> getUnknownCache() { return unknownCache; }
+
+    /**
+     * Gets number of lookups answered by a tier
+     * @param tier Tier lookups were answered by
+     * @return Lookup count
+     */
+    long getTierHits(Tier tier) { return tierHits[tier.ordinal()].sum(); }
 
     /**
-     * States whether the cached response is expired
-     * @param cacheExpiryInSeconds Expiry time
-     * @return True if expired and vice versa
+     * Gets number of lookups answered with an expired entry
+     * because Mojang API could not be reached
+     * @return Stale lookup count
      */
-    boolean hasExpired(int cacheExpiryInSeconds) {
-        Timestamp now = Timestamp.from(Instant.now());
-        return (now.getTime() - (cacheExpiryInSeconds*1000)) > (cachedAt.getTime());
+    long getStaleServed() { return staleServed.sum(); }
+
+    private <K, V> CompletableFuture<V> orStale(CompletableFuture<V> request, ExpiringCache<K, V> cache, K key) {
+        // Fall back to an expired entry when Mojang cannot answer
+        CompletableFuture<V> result = new CompletableFuture<>();
+        request.whenComplete((value, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            V stale;
+            if (error == null) {
+                result.complete(value);
+            } else if (caching && !(cause instanceof UnknownProfileException) && (stale = cache.getStale(key)) != null) {
+                staleServed.increment();
+                result.complete(stale);
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+        return result;
+    }
+
+    private <V> CompletableFuture<V> hit(Tier tier, V value, Object trace) {
+        tierHits[tier.ordinal()].increment();
+        if (trace != null) {
+            Trace.lookupSource(trace, tier == Tier.MEMORY ? "memory" : "server");
+            Trace.endLookup(trace, null);
+        }
+        return CompletableFuture.completedFuture(value);
+    }
+
+    private void indexServerProfiles(Map<UUID, String> names, File playerData, File userCache) {
+        // Last known names of every player who has joined, seen when their data was last saved
+        for (Map.Entry<UUID, String> name: names.entrySet()) {
+            long seenAt = playerData == null ? 0 : new File(playerData, name.getKey() + ".dat").lastModified();
+            serverProfiles.add(name.getValue(), name.getKey(), seenAt);
+        }
+
+        // Server's own cache of recent lookups
+        if (userCache.exists())
+            try {
+                serverProfiles.addUserCache(userCache);
+            } catch (IOException e) {
+                Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to read usercache.json");
+                e.printStackTrace();
+            }
+
+        Bukkit.getLogger().info(plugin.prefix + ChatColor.GREEN + "Indexed " + serverProfiles.size() + " known players");
+    }
+
+    private void breakerChanged(CircuitBreaker.State state) {
+        if (state == CircuitBreaker.State.OPEN)
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Mojang API unavailable, retrying in " +
+                    upstream.breaker().backoffMillis() + "ms");
+        else if (state == CircuitBreaker.State.CLOSED)
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.GREEN + "Mojang API available again");
+    }
+
+    private URL profilesUrl() {
+        try {
+            return new URL(plugin.getConfig().getString("Mojang.profilesUrl"));
+        } catch (MalformedURLException e) {
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Invalid Mojang.profilesUrl, using default");
+            try {
+                return new URL(ProfileBatcher.PROFILES_URL);
+            } catch (MalformedURLException impossible) {
+                throw new IllegalStateException(impossible);
+            }
+        }
+    }
+
+    private <V> CompletableFuture<V> blocking(Lookup<V> lookup) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        try {
+            io.execute(() -> {
+                try {
+                    future.complete(lookup.fetch());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Pool is saturated or shut down
+            future.completeExceptionally(new IOException("Too many pending Mojang API requests", e));
+        }
+        return future;
     }
 
     /**
-     * Gets stored value
-     * @return UUID
+     * Where a lookup was answered from, in the order tried
      */
-    UUID getUUID() { return uuid; }
+    enum Tier {
+        MEMORY, // Recent lookups held in memory
+        SERVER, // Players the server already knows
+        DISK, // Lookups kept in identities.dat
+        NETWORK, // Mojang API
+    }
 
     /**
-     * Formatted data for debugging
-     * @return Formatted string representing instance
+     * Blocking request made on a lookup thread
+     * @param <V> Type of value looked up
      */
-    @Override
-    public String toString() {
-        return String.format("[\"uuid\": \"%s\", \"expiry\": \"%s\"]", uuid.toString(), cachedAt.getTime());
+    private interface Lookup<V> {
+        V fetch() throws Exception;
     }
 
 }
@@ -1,127 +1,299 @@
+import metrics.Histogram;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.block.Block;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+import storage.RegionFiles;
+import types.Owners;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
- * Manages config file of all protected blocks
+ * Manages region files of all protected blocks on a single
+ * writer thread. Each region file holds the protections of
+ * 32x32 chunks and is only read once one of its chunks loads.
+ * Changes are journaled and folded into the region files once
+ * enough have accumulated, so a crash at any point loses no
+ * acknowledged change
  */
-class ProtectedConfig {
+class ProtectedConfig implements ProtectionStore {
 
     private EagleEyePlugin plugin;
-    private FileConfiguration conf;
-    private File file;
+    private File folder;
+    private RegionFiles files; // Only touched by writer
+    private BukkitTask syncTask;
+    private final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+        Thread t = new Thread(r, "EagleEye-Writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Histogram writes, saves, reads;
 
     /**
-     * Constructor used to create a config or initialize a
-     * yaml file while utilising caching from MojangAPI class
+     * Constructor used to create the region folder, migrate an
+     * older protected.yml and replay the journal
      * @param plugin Plugin used to get prefix and plugin name
-     * @param guarded Empty HashMap for loading values from yaml
-     * @param api Caching class which interacts with Mojang API
      */
-    ProtectedConfig(EagleEyePlugin plugin, HashMap<Block, Owners> guarded, MojangAPI api) {
+    ProtectedConfig(EagleEyePlugin plugin) {
         this.plugin = plugin;
+        this.writes = plugin.getMetrics().timer("storage.write");
+        this.saves = plugin.getMetrics().timer("storage.save");
+        this.reads = plugin.getMetrics().timer("storage.read");
+        plugin.getMetrics().gauge("storage.pending", this::pending);
 
         // Create folder if not exists
-        if (!plugin.getDataFolder().exists())
-            if (!plugin.getDataFolder().mkdir()) {
+        folder = new File(plugin.getDataFolder(), "protected");
+        if (!folder.exists())
+            if (!folder.mkdirs()) {
                 Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to create folder " +
-                        plugin.getDescription().getName());
+                        folder.getName());
                 Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Shutting down plugin...");
                 Bukkit.getPluginManager().disablePlugin(plugin); // Disable plugin
                 return;
             }
 
-        // Create file if not exists
-        file = new File(plugin.getDataFolder(), "protected.yml");
-        if (!file.exists()) {
-            try {
-                if (!file.createNewFile()) throw new IOException("Failed to create file");
-                Bukkit.getLogger().info(plugin.prefix + ChatColor.GREEN + "Created new protected.yml");
-            } catch (IOException e) {
-                Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to create protected.yml");
-                Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Shutting down plugin...");
-                e.printStackTrace();
-                Bukkit.getPluginManager().disablePlugin(plugin); // Disable plugin
-                return;
-            }
-        }
-
-        // Initialize config with existing content
-        this.init(guarded, api);
+        // Initialize journal and region files
+        this.init();
 
     }
 
     /**
-     * Puts a list of owners to a block in yaml file. This
+     * Puts a list of owners to a block in its region file. This
      * method is also used to remove single users by over-
      * writing existing Owners.
      * @param owners List of owner(s)
      * @param block Block owners are assigned to
      */
-    void put(Owners owners, Block block) {
-        conf.set(toXYZ(block), owners.asList());
-        this.save();
+    @Override
+    public void put(Owners owners, Block block) {
+        String world = block.getWorld().getName();
+        int x = block.getX(), y = block.getY(), z = block.getZ();
+        List<String> list = owners.asList();
+        writer.execute(() -> write(world, x, y, z, list));
     }
 
     /**
      * Used to remove the last/only owner of a block
      * @param block Block owner is assigned to
      */
-    void remove(Block block) {
-        conf.set(toXYZ(block), null);
-        this.save();
+    @Override
+    public void remove(Block block) {
+        String world = block.getWorld().getName();
+        int x = block.getX(), y = block.getY(), z = block.getZ();
+        writer.execute(() -> write(world, x, y, z, null));
+    }
+
+    /**
+     * Reads protections of a chunk that has just loaded. The
+     * region stays in memory until all of its chunks unload
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @return Protections inside chunk once read
+     */
+    @Override
+    public CompletableFuture<List<StoredProtection>> loadChunk(String world, int chunkX, int chunkZ) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            List<StoredProtection> protections = new ArrayList<>();
+            files.loadChunk(world, chunkX, chunkZ, (w, x, y, z, owners) ->
+                    protections.add(protection(x, y, z, owners)));
+            reads.recordSince(start);
+            return protections;
+        }, writer);
+    }
+
+    /**
+     * Releases a chunk that has unloaded, writing and evicting
+     * its region once none of the region's chunks are loaded
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     */
+    @Override
+    public void unloadChunk(String world, int chunkX, int chunkZ) {
+        writer.execute(() -> {
+            try {
+                files.unloadChunk(world, chunkX, chunkZ);
+            } catch (IOException e) {
+                // Retried by the next compaction
+                Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + e.getMessage());
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Region files would all have to be read to count them
+     * @return Always null
+     */
+    @Override
+    public CompletableFuture<Integer> count() { return CompletableFuture.completedFuture(null); }
+
+    /**
+     * Region files would all have to be read to search them
+     * @param owner Owner UUID
+     * @return Always null
+     */
+    @Override
+    public CompletableFuture<List<String>> findOwned(UUID owner) { return CompletableFuture.completedFuture(null); }
+
+    /**
+     * Gets number of changes and chunk reads queued or running
+     * on the writer thread
+     * @return Pending task count
+     */
+    @Override
+    public int pending() { return writer.getQueue().size() + writer.getActiveCount(); }
+
+    /**
+     * Reads every protection from the region files, used to move
+     * them to another store. Must only be called once closed
+     * @param consumer Callback receiving world name and protection
+     */
+    void forEach(BiConsumer<String, StoredProtection> consumer) {
+        files.forEach((world, x, y, z, owners) -> consumer.accept(world, protection(x, y, z, owners)));
     }
 
-    private void init(HashMap<Block, Owners> guarded, MojangAPI api) {
-
-        // Load file content
-        conf = YamlConfiguration.loadConfiguration(file);
-
-        // For every protected block
-        for (String uuid: conf.getKeys(false)) {
-            // Get block
-            Block block = fromXYZ(uuid);
-            // Get list of owners
-            List<String> owners = (List<String>) conf.getList(uuid);
-            // Add every owner to guard list
-            Owners o = new Owners(api);
-            for (String owner: owners)
-                o.add(UUID.fromString(owner));
-            guarded.put(block, o);
+    /**
+     * Writes all changed regions and stops the writer thread
+     */
+    @Override
+    public void close() {
+        if (syncTask != null) syncTask.cancel();
+        if (files == null) { writer.shutdown(); return; } // Never initialized
+        writer.execute(this::compact);
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS))
+                Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Timed out saving protections");
+            files.close();
+        } catch (InterruptedException | IOException e) {
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to close protected.journal");
+            e.printStackTrace();
+        }
+    }
+
+    private void init() {
+
+        int syncIntervalMillis = plugin.getConfig().getInt("Storage.syncIntervalMillis");
+
+        // Move protections from a single protected.yml into region files, then replay later changes over them
+        File legacy = new File(plugin.getDataFolder(), "protected.yml");
+        int replayed;
+        try {
+            files = new RegionFiles(folder, new File(plugin.getDataFolder(), "protected.journal"),
+                    plugin.getConfig().getInt("Storage.compactAfterChanges"), syncIntervalMillis, saves);
+            if (legacy.exists()) {
+                FileConfiguration conf = YamlConfiguration.loadConfiguration(legacy);
+                for (String xyz: conf.getKeys(false))
+                    files.set(xyz, conf.getStringList(xyz));
+            }
+            replayed = files.replay();
+        } catch (IOException e) {
+            files = null; // Journal is never reset
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to read protected.journal");
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Shutting down plugin...");
+            e.printStackTrace();
+            Bukkit.getPluginManager().disablePlugin(plugin); // Disable plugin
+            return;
+        }
+
+        if (legacy.exists()) {
+            // Region files must be written before protected.yml is moved aside
+            if (!compact())
+                Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to write region files, " +
+                        "protected.yml will be migrated again on next start");
+            else if (legacy.renameTo(new File(plugin.getDataFolder(), "protected.yml.migrated")))
+                Bukkit.getLogger().info(plugin.prefix + ChatColor.GREEN + "Migrated protected.yml to region files");
+        } else if (replayed > 0) {
+            // Fold replayed changes into region files
+            writer.execute(this::compact);
+        }
+
+        // Changes since the last sync share a single fsync
+        if (syncIntervalMillis > 0) {
+            long ticks = Math.max(1, syncIntervalMillis / 50);
+            syncTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::requestSync, ticks, ticks);
         }
 
     }
 
-    private void save() {
+    private void requestSync() {
         try {
-            conf.save(file); // Save current conf data to yaml file
+            writer.execute(() -> {
+                try {
+                    files.sync();
+                } catch (IOException e) {
+                    Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to sync protected.journal");
+                    e.printStackTrace();
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Closing, which syncs anyway
+        }
+    }
+
+    private void write(String world, int x, int y, int z, List<String> owners) {
+        long start = System.nanoTime();
+        try {
+            files.write(world, x, y, z, owners);
         } catch (IOException e) {
-            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to update protected.yml");
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to update protected.journal");
             e.printStackTrace();
         }
+        writes.recordSince(start);
+
+        // Fold journal into region files
+        if (files.shouldCompact()) compact();
     }
 
-    private String toXYZ(Block b) {
-        // Converts a block to a colon delimited string with world, X, Y and Z locations
-        return String.format("%s:%s:%s:%s", b.getWorld().getName(), b.getX(), b.getY(), b.getZ());
+    private boolean compact() {
+        try {
+            files.compact();
+            return true;
+        } catch (IOException e) {
+            // Journal still holds changes of any region that failed to save
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
     }
 
-    private Block fromXYZ(String xyz) {
-        // Parse String to Block
-        String[] loc = xyz.split(":");
-        return Bukkit.getWorld(loc[0]).getBlockAt(
-                (int) Float.parseFloat(loc[1]),
-                (int) Float.parseFloat(loc[2]),
-                (int) Float.parseFloat(loc[3])
-        );
+    private StoredProtection protection(int x, int y, int z, List<String> owners) {
+        List<UUID> uuids = new ArrayList<>();
+        for (String owner: owners)
+            uuids.add(UUID.fromString(owner));
+        return new StoredProtection(x, y, z, Owners.of(uuids));
+    }
+
+}
+
+/**
+ * Protection read from a region file, handed from the
+ * writer thread to the main thread
+ */
+class StoredProtection {
+
+    final int x, y, z;
+    final Owners owners;
+
+    StoredProtection(int x, int y, int z, Owners owners) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.owners = owners;
     }
 
 }
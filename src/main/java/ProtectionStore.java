@@ -0,0 +1,90 @@
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.block.Block;
+import types.Owners;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where protections are kept between restarts. Called from the
+ * main thread, which must never wait on disk, so changes are
+ * queued and chunks are read in the background
+ */
+interface ProtectionStore {
+
+    /**
+     * Opens the store chosen by Storage.type
+     * @param plugin Main plugin
+     * @return YAML region files unless sqlite is chosen
+     */
+    static ProtectionStore open(EagleEyePlugin plugin) {
+        String type = plugin.getConfig().getString("Storage.type", "yaml");
+        if (type.equalsIgnoreCase("sqlite")) return new SqliteStore(plugin);
+        if (!type.equalsIgnoreCase("yaml"))
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Unknown Storage.type " + type + ", using yaml");
+        return new ProtectedConfig(plugin);
+    }
+
+    /**
+     * Sets owners of a block, replacing any previous owners
+     * @param owners List of owner(s)
+     * @param block Block owners are assigned to
+     */
+    void put(Owners owners, Block block);
+
+    /**
+     * Removes protection of a block
+     * @param block Block owner is assigned to
+     */
+    void remove(Block block);
+
+    /**
+     * Reads protections of a chunk that has just loaded
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @return Protections inside chunk once read, including
+     *         changes put before this call
+     */
+    CompletableFuture<List<StoredProtection>> loadChunk(String world, int chunkX, int chunkZ);
+
+    /**
+     * Releases a chunk that has unloaded
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     */
+    void unloadChunk(String world, int chunkX, int chunkZ);
+
+    /**
+     * Counts every protection kept, loaded or not
+     * @return Protection count once counted, including changes
+     *         put before this call, or null if the store cannot
+     *         count without reading everything
+     */
+    CompletableFuture<Integer> count();
+
+    /**
+     * Finds every block an owner holds, loaded or not
+     * @param owner Owner UUID
+     * @return Locations as world:x:y:z once found, including
+     *         changes put before this call, or null if the store
+     *         cannot find them without reading everything
+     */
+    CompletableFuture<List<String>> findOwned(UUID owner);
+
+    /**
+     * Gets number of changes and chunk reads not yet done
+     * @return Pending task count
+     */
+    int pending();
+
+    /**
+     * Writes every pending change and releases files, blocking
+     * until done
+     */
+    void close();
+
+}
@@ -0,0 +1,222 @@
+import metrics.Histogram;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.block.Block;
+import storage.ProtectionDatabase;
+import types.Owners;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps protections in protected.db, an embedded SQLite
+ * database. Changes are queued to a single writer thread,
+ * which commits everything queued in one transaction whenever
+ * it catches up, so bursts of changes share a commit. Chunks
+ * are read with an indexed query, so nothing but the chunks
+ * being loaded is ever read
+ */
+class SqliteStore implements ProtectionStore {
+
+    private static final int MAX_BATCH = 10000; // Commit at least this often during long bursts
+    private static final String MIGRATED = "migrated"; // Set once region files have been moved
+
+    private EagleEyePlugin plugin;
+    private ProtectionDatabase database;
+    private final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+        Thread t = new Thread(r, "EagleEye-Writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Histogram writes, saves, reads;
+
+    /**
+     * Constructor used to open the database, moving protections
+     * over from region files the first time
+     * @param plugin Plugin used to get prefix and config
+     */
+    SqliteStore(EagleEyePlugin plugin) {
+        this.plugin = plugin;
+        this.writes = plugin.getMetrics().timer("storage.write");
+        this.saves = plugin.getMetrics().timer("storage.save");
+        this.reads = plugin.getMetrics().timer("storage.read");
+
+        // Commits follow the same durability setting as the journal
+        int syncIntervalMillis = plugin.getConfig().getInt("Storage.syncIntervalMillis");
+        String synchronous = syncIntervalMillis == 0 ? "FULL" : syncIntervalMillis > 0 ? "NORMAL" : "OFF";
+        try {
+            database = new ProtectionDatabase(new File(plugin.getDataFolder(), "protected.db"), synchronous);
+            migrate();
+        } catch (SQLException e) {
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to open protected.db");
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Shutting down plugin...");
+            e.printStackTrace();
+            Bukkit.getPluginManager().disablePlugin(plugin); // Disable plugin
+            return;
+        }
+
+        plugin.getMetrics().gauge("storage.pending", this::pending);
+    }
+
+    @Override
+    public void put(Owners owners, Block block) {
+        String world = block.getWorld().getName();
+        int x = block.getX(), y = block.getY(), z = block.getZ();
+        List<String> list = owners.asList();
+        writer.execute(() -> write(() -> database.put(world, x, y, z, list)));
+    }
+
+    @Override
+    public void remove(Block block) {
+        String world = block.getWorld().getName();
+        int x = block.getX(), y = block.getY(), z = block.getZ();
+        writer.execute(() -> write(() -> database.remove(world, x, y, z)));
+    }
+
+    @Override
+    public CompletableFuture<List<StoredProtection>> loadChunk(String world, int chunkX, int chunkZ) {
+        if (database == null) return CompletableFuture.completedFuture(Collections.emptyList()); // Failed to open
+        return CompletableFuture.supplyAsync(() -> {
+            commit(); // Read changes queued before this chunk loaded
+            long start = System.nanoTime();
+            List<StoredProtection> protections = new ArrayList<>();
+            try {
+                database.readChunk(world, chunkX, chunkZ, (w, x, y, z, owners) -> {
+                    List<UUID> uuids = new ArrayList<>();
+                    try {
+                        for (String owner: owners.split(","))
+                            uuids.add(UUID.fromString(owner));
+                    } catch (IllegalArgumentException e) {
+                        // Skip only this block, the rest of the chunk is still guarded
+                        Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Skipped protection at " + x + "," +
+                                y + "," + z + " of " + world + " with malformed owners " + owners);
+                        return;
+                    }
+                    protections.add(new StoredProtection(x, y, z, Owners.of(uuids)));
+                });
+            } catch (SQLException e) {
+                Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to read chunk " + chunkX + "," +
+                        chunkZ + " of " + world + " from protected.db");
+                e.printStackTrace();
+            }
+            reads.recordSince(start);
+            return protections;
+        }, writer);
+    }
+
+    @Override
+    public void unloadChunk(String world, int chunkX, int chunkZ) {
+        // Nothing is held in memory beyond the protection index
+    }
+
+    @Override
+    public CompletableFuture<Integer> count() {
+        if (database == null) return CompletableFuture.completedFuture(null); // Failed to open
+        return CompletableFuture.supplyAsync(() -> {
+            commit(); // Count changes queued before this call
+            try {
+                return database.count();
+            } catch (SQLException e) {
+                Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to count protections in protected.db");
+                e.printStackTrace();
+                return null;
+            }
+        }, writer);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> findOwned(UUID owner) {
+        if (database == null) return CompletableFuture.completedFuture(null); // Failed to open
+        return CompletableFuture.supplyAsync(() -> {
+            commit(); // Find changes queued before this call
+            List<String> owned = new ArrayList<>();
+            try {
+                database.readOwned(owner.toString(), (world, x, y, z, owners) ->
+                        owned.add(world + ":" + x + ":" + y + ":" + z));
+                return owned;
+            } catch (SQLException e) {
+                Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to find protections of " + owner +
+                        " in protected.db");
+                e.printStackTrace();
+                return null;
+            }
+        }, writer);
+    }
+
+    @Override
+    public int pending() { return writer.getQueue().size() + writer.getActiveCount(); }
+
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS))
+                Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Timed out saving protections");
+            if (database != null) database.close(); // Commits anything still pending
+        } catch (InterruptedException | SQLException e) {
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to close protected.db");
+            e.printStackTrace();
+        }
+    }
+
+    private void write(Runnable change) {
+        if (database == null) return; // Failed to open
+        long start = System.nanoTime();
+        change.run();
+        writes.recordSince(start);
+
+        // Commit once every queued change has joined the batch
+        if (writer.getQueue().isEmpty() || database.pending() >= MAX_BATCH) commit();
+    }
+
+    private void commit() {
+        if (database.pending() == 0) return;
+        long start = System.nanoTime();
+        try {
+            database.commit();
+            saves.recordSince(start);
+        } catch (SQLException e) {
+            // Changes stay pending and are retried with the next commit
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to update protected.db");
+            e.printStackTrace();
+        }
+    }
+
+    private void migrate() throws SQLException {
+        // Region files are only moved once, then renamed so they are never read again
+        File folder = new File(plugin.getDataFolder(), "protected");
+        File legacy = new File(plugin.getDataFolder(), "protected.yml");
+        if (!folder.isDirectory() && !legacy.exists()) return;
+
+        // Moved before but left in place, the database has changed since so they are stale
+        if (database.getMeta(MIGRATED) != null) {
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Ignoring protected folder, its protections " +
+                    "were already moved to protected.db");
+            return;
+        }
+
+        // Folds journal and any protected.yml into region files first
+        ProtectedConfig yaml = new ProtectedConfig(plugin);
+        yaml.close();
+
+        int[] moved = {0};
+        yaml.forEach((world, p) -> {
+            database.put(world, p.x, p.y, p.z, p.owners.asList());
+            moved[0]++;
+        });
+        database.putMeta(MIGRATED, String.valueOf(System.currentTimeMillis())); // Committed with the protections
+        database.commit();
+
+        Bukkit.getLogger().info(plugin.prefix + ChatColor.GREEN + "Moved " + moved[0] + " protections to protected.db");
+        if (!folder.renameTo(new File(plugin.getDataFolder(), "protected.migrated")))
+            Bukkit.getLogger().info(plugin.prefix + ChatColor.RED + "Failed to rename protected folder, " +
+                    "it will be ignored from now on");
+    }
+
+}
@@ -0,0 +1,207 @@
+package cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe cache bounded by entry count and time to live.
+ * Keys are spread over independently locked segments, each
+ * evicting its least recently used entry once full. Expiry
+ * uses monotonic nanosecond timestamps and never allocates.
+ * Expired entries stay until replaced or evicted so they can
+ * still be served when a fresh value cannot be fetched
+ * @param <K> Type of key
+ * @param <V> Type of value
+ */
+public class ExpiringCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * Creates an empty cache
+     * @param maxSize Maximum number of entries held
+     * @param ttlNanos Time to live of each entry in nanoseconds
+     */
+    @SuppressWarnings("unchecked")
+    public ExpiringCache(int maxSize, long ttlNanos) {
+        this.ttlNanos = ttlNanos;
+        this.segments = new Segment[SEGMENTS];
+        int perSegment = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment<>(perSegment, evictions);
+    }
+
+    /**
+     * Gets value if present and not expired
+     * @param key Key to look up
+     * @return Cached value or null
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segment(key);
+        long now = System.nanoTime();
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            if (entry != null) {
+                if (now - entry.expiresAt < 0) {
+                    hits.increment();
+                    return entry.value;
+                }
+                if (!entry.expired) {
+                    entry.expired = true;
+                    expirations.increment();
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Gets value even if it has expired, used when a fresh
+     * value cannot be fetched. Not counted as a hit or miss
+     * @param key Key to look up
+     * @return Cached value or null if never cached or evicted
+     */
+    public V getStale(K key) {
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            return entry == null ? null : entry.value;
+        }
+    }
+
+    /**
+     * Caches value for the full time to live
+     * @param key Key to cache under
+     * @param value Non-null value
+     */
+    public void put(K key, V value) { put(key, value, ttlNanos); }
+
+    /**
+     * Caches value for a custom time to live
+     * @param key Key to cache under
+     * @param value Non-null value
+     * @param ttlNanos Time to live in nanoseconds
+     */
+    public void put(K key, V value, long ttlNanos) {
+        if (ttlNanos <= 0) return;
+        Entry<V> entry = new Entry<>(value, System.nanoTime() + ttlNanos);
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes key from cache
+     * @param key Key to remove
+     */
+    public void invalidate(K key) {
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Gets number of cached entries, including any that have
+     * expired but not yet been replaced or evicted
+     * @return Entry count
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment: segments)
+            synchronized (segment) {
+                size += segment.size();
+            }
+        return size;
+    }
+
+    /**
+     * Gets number of lookups answered from cache
+     * @return Hit count
+     */
+    public long hits() { return hits.sum(); }
+
+    /**
+     * Gets number of lookups not answered from cache
+     * @return Miss count
+     */
+    public long misses() { return misses.sum(); }
+
+    /**
+     * Gets number of entries evicted to stay within size
+     * @return Eviction count
+     */
+    public long evictions() { return evictions.sum(); }
+
+    /**
+     * Gets number of entries found to have expired
+     * @return Expiration count
+     */
+    public long expirations() { return expirations.sum(); }
+
+    /**
+     * Gets share of lookups answered from cache
+     * @return Ratio between 0 and 1
+     */
+    public double hitRatio() {
+        long h = hits(), total = h + misses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    private Segment<K, V> segment(Object key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Cached value with its monotonic expiry
+     * @param <V> Type of value
+     */
+    static class Entry<V> {
+
+        final V value;
+        final long expiresAt;
+        boolean expired; // Counted as expired
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+    /**
+     * Access ordered map which drops its least recently used
+     * entry once full
+     */
+    private static class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,181 @@
+package cache;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Username and UUID pairs kept on disk so lookups survive a
+ * restart. Expiry is stored as wall clock time so entries keep
+ * their remaining time to live. The file is read on first use
+ */
+public class IdentityStore {
+
+    private static final int MAGIC = 0x45454944; // "EEID"
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final HashMap<String, Entry<UUID>> uuids = new HashMap<>();
+    private final HashMap<UUID, Entry<String>> usernames = new HashMap<>();
+    private boolean loaded;
+    private boolean dirty;
+
+    /**
+     * Creates store backed by file, which is not read yet
+     * @param file Store file
+     */
+    public IdentityStore(File file) { this.file = file; }
+
+    /**
+     * Gets UUID stored for a lower case username
+     * @param username Lower case username
+     * @return Unexpired entry or null
+     */
+    public synchronized Entry<UUID> getUUID(String username) { return live(uuids, username); }
+
+    /**
+     * Gets username stored for a UUID
+     * @param uuid Player UUID
+     * @return Unexpired entry or null
+     */
+    public synchronized Entry<String> getUsername(UUID uuid) { return live(usernames, uuid); }
+
+    /**
+     * Stores UUID of a lower case username
+     * @param username Lower case username
+     * @param uuid Player UUID
+     * @param ttlMillis Time to live in milliseconds
+     */
+    public synchronized void putUUID(String username, UUID uuid, long ttlMillis) {
+        load();
+        uuids.put(username, new Entry<>(uuid, System.currentTimeMillis() + ttlMillis));
+        dirty = true;
+    }
+
+    /**
+     * Stores username of a UUID
+     * @param uuid Player UUID
+     * @param username Username with its original case
+     * @param ttlMillis Time to live in milliseconds
+     */
+    public synchronized void putUsername(UUID uuid, String username, long ttlMillis) {
+        load();
+        usernames.put(uuid, new Entry<>(username, System.currentTimeMillis() + ttlMillis));
+        dirty = true;
+    }
+
+    /**
+     * Gets number of stored usernames and UUIDs
+     * @return Entry count
+     */
+    public synchronized int size() { return uuids.size() + usernames.size(); }
+
+    /**
+     * Drops expired entries, then writes the rest to a temporary
+     * file which replaces the store file. Writes nothing if
+     * unchanged
+     * @throws IOException Failed to write file
+     */
+    public void save() throws IOException {
+        HashMap<String, Entry<UUID>> uuidCopy;
+        HashMap<UUID, Entry<String>> usernameCopy;
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            // Entries that are never looked up again would otherwise stay forever
+            uuids.values().removeIf(e -> e.expiresAt <= now);
+            usernames.values().removeIf(e -> e.expiresAt <= now);
+
+            if (!dirty) return;
+            uuidCopy = new HashMap<>(uuids);
+            usernameCopy = new HashMap<>(usernames);
+            dirty = false;
+        }
+
+        // Write outside lock so lookups are not held up
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(uuidCopy.size());
+            for (Map.Entry<String, Entry<UUID>> e: uuidCopy.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().value.getMostSignificantBits());
+                out.writeLong(e.getValue().value.getLeastSignificantBits());
+                out.writeLong(e.getValue().expiresAt);
+            }
+
+            out.writeInt(usernameCopy.size());
+            for (Map.Entry<UUID, Entry<String>> e: usernameCopy.entrySet()) {
+                out.writeLong(e.getKey().getMostSignificantBits());
+                out.writeLong(e.getKey().getLeastSignificantBits());
+                out.writeUTF(e.getValue().value);
+                out.writeLong(e.getValue().expiresAt);
+            }
+        } catch (IOException e) {
+            synchronized (this) { dirty = true; } // Retry on next save
+            throw e;
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private <K, V> Entry<V> live(HashMap<K, Entry<V>> map, K key) {
+        load();
+        Entry<V> entry = map.get(key);
+        if (entry == null) return null;
+        if (entry.expiresAt > System.currentTimeMillis()) return entry;
+        map.remove(key);
+        return null;
+    }
+
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.exists()) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return; // Unknown format, start empty
+
+            for (int i = in.readInt(); i > 0; i--)
+                uuids.put(in.readUTF(), new Entry<>(new UUID(in.readLong(), in.readLong()), in.readLong()));
+
+            for (int i = in.readInt(); i > 0; i--) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                usernames.put(uuid, new Entry<>(in.readUTF(), in.readLong()));
+            }
+        } catch (IOException e) {
+            // A damaged store only costs extra lookups
+            uuids.clear();
+            usernames.clear();
+        }
+    }
+
+    /**
+     * Stored value with its wall clock expiry
+     * @param <V> Type of value
+     */
+    public static class Entry<V> {
+
+        public final V value;
+        public final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Gets time left before entry expires
+         * @return Remaining time to live in nanoseconds
+         */
+        public long remainingNanos() {
+            return TimeUnit.MILLISECONDS.toNanos(expiresAt - System.currentTimeMillis());
+        }
+
+    }
+
+}
@@ -0,0 +1,126 @@
+package cache;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index of usernames and UUIDs of players the server already
+ * knows about, filled in the background and as players join,
+ * then read from any thread without locking. Players may have
+ * been renamed since they were last seen, so entries are only
+ * trusted for a limited time
+ */
+public class NameIndex {
+
+    private static final long USER_CACHE_EXPIRY = TimeUnit.DAYS.toMillis(30); // Set by the server on each lookup
+
+    private final long maxAgeMillis;
+    private final ConcurrentHashMap<String, Seen<UUID>> uuids = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, Seen<String>> usernames = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty index
+     * @param maxAgeMillis How long after a player was last seen
+     *                     their name and UUID are trusted
+     */
+    public NameIndex(long maxAgeMillis) { this.maxAgeMillis = maxAgeMillis; }
+
+    /**
+     * Gets UUID of a lower case username
+     * @param username Lower case username
+     * @return UUID or null if unknown or seen too long ago
+     */
+    public UUID getUUID(String username) { return live(uuids.get(username)); }
+
+    /**
+     * Gets username of a UUID
+     * @param uuid Player UUID
+     * @return Username or null if unknown or seen too long ago
+     */
+    public String getUsername(UUID uuid) { return live(usernames.get(uuid)); }
+
+    /**
+     * Gets number of indexed players
+     * @return Player count
+     */
+    public int size() { return usernames.size(); }
+
+    /**
+     * Adds a player, unless a later sighting of them is already
+     * indexed or this one is too old to be trusted
+     * @param username Username with its original case
+     * @param uuid Player UUID
+     * @param seenAt Wall clock time player was last seen
+     */
+    public synchronized void add(String username, UUID uuid, long seenAt) {
+        if (seenAt + maxAgeMillis <= System.currentTimeMillis()) return;
+        Seen<String> previous = usernames.get(uuid);
+        if (previous != null && previous.at > seenAt) return;
+
+        // Drop the old name of a player who has been renamed
+        usernames.put(uuid, new Seen<>(username, seenAt));
+        if (previous != null) {
+            String old = previous.value.toLowerCase(Locale.ROOT);
+            Seen<UUID> owner = uuids.get(old);
+            if (owner != null && owner.value.equals(uuid)) uuids.remove(old, owner);
+        }
+
+        // Whoever was seen with a name most recently holds it
+        String key = username.toLowerCase(Locale.ROOT);
+        Seen<UUID> owner = uuids.get(key);
+        if (owner == null || owner.at <= seenAt) uuids.put(key, new Seen<>(uuid, seenAt));
+    }
+
+    /**
+     * Adds unexpired players from a server's usercache.json.
+     * Entries expire a month after the server last looked them
+     * up, which is taken as when they were last seen
+     * @param file User cache file
+     * @throws IOException Failed to read or parse file
+     */
+    public void addUserCache(File file) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z", Locale.ROOT);
+        long now = System.currentTimeMillis();
+
+        // Entries look like {"name": ..., "uuid": ..., "expiresOn": ...}
+        try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            for (Object o: (JSONArray) new JSONParser().parse(in)) {
+                JSONObject entry = (JSONObject) o;
+                String expiresOn = (String) entry.get("expiresOn");
+                long expiresAt = expiresOn == null ? now + USER_CACHE_EXPIRY : format.parse(expiresOn).getTime();
+                if (expiresAt <= now) continue;
+                long seenAt = expiresAt - USER_CACHE_EXPIRY;
+                add((String) entry.get("name"), UUID.fromString((String) entry.get("uuid")), seenAt);
+            }
+        } catch (ParseException | java.text.ParseException | ClassCastException | NullPointerException |
+                IllegalArgumentException e) {
+            throw new IOException("Unexpected contents in " + file.getName(), e);
+        }
+    }
+
+    private <V> V live(Seen<V> seen) {
+        return seen == null || seen.at + maxAgeMillis <= System.currentTimeMillis() ? null : seen.value;
+    }
+
+    private static class Seen<V> {
+
+        final V value;
+        final long at;
+
+        Seen(V value, long at) {
+            this.value = value;
+            this.at = at;
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+package cache;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Answers UUID lookups by username from memory alone, before
+ * any request is made. Names that cannot exist or recently did
+ * not exist are answered as unknown, then cached UUIDs are
+ * returned
+ */
+public class UsernameCache {
+
+    /**
+     * Returned for usernames known not to exist. No player has
+     * the nil UUID
+     */
+    public static final UUID UNKNOWN = new UUID(0, 0);
+
+    private static final Pattern VALID_USERNAME = Pattern.compile("[A-Za-z0-9_]{1,16}");
+
+    private final ExpiringCache<String, UUID> uuids;
+    private final ExpiringCache<String, Boolean> unknown;
+
+    /**
+     * Creates lookup over caches shared with the caller
+     * @param uuids UUIDs by lower case username, or null if
+     *              caching is disabled
+     * @param unknown Lower case usernames reported as unknown,
+     *                or null if negative caching is disabled
+     */
+    public UsernameCache(ExpiringCache<String, UUID> uuids, ExpiringCache<String, Boolean> unknown) {
+        this.uuids = uuids;
+        this.unknown = unknown;
+    }
+
+    /**
+     * Gets key a username is cached under, as usernames are case
+     * insensitive
+     * @param username Username with any case
+     * @return Lower case username
+     */
+    public static String key(String username) { return username.toLowerCase(Locale.ROOT); }
+
+    /**
+     * Gets UUID of a username from memory
+     * @param username Username as typed
+     * @param key Key of username
+     * @return UUID, UNKNOWN if no player has or can have the
+     *         username, or null if it must be looked up further
+     */
+    public UUID get(String username, String key) {
+        if (!VALID_USERNAME.matcher(username).matches() || (unknown != null && unknown.get(key) != null))
+            return UNKNOWN;
+        return uuids == null ? null : uuids.get(key);
+    }
+
+}
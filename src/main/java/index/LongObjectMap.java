@@ -0,0 +1,195 @@
+package index;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map keyed on primitive longs. Lookups
+ * never box the key or allocate, which makes it suitable for
+ * code running on every block or inventory event
+ * @param <V> Type of value stored against each key
+ */
+public class LongObjectMap<V> {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private Object[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    /**
+     * Creates an empty map with a small initial capacity
+     */
+    public LongObjectMap() { this(16); }
+
+    /**
+     * Creates an empty map able to hold the expected number
+     * of entries without resizing
+     * @param expected Number of entries expected
+     */
+    public LongObjectMap(int expected) { allocate(capacityFor(expected)); }
+
+    /**
+     * Gets value associated with key
+     * @param key Primitive key
+     * @return Associated value or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int i = slot(key);
+        while (used[i]) {
+            if (keys[i] == key) return (V) values[i];
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if key is present
+     * @param key Primitive key
+     * @return Is key present
+     */
+    public boolean containsKey(long key) { return get(key) != null; }
+
+    /**
+     * Associates value with key, replacing any existing value
+     * @param key Primitive key
+     * @param value Non-null value
+     * @return Previous value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        int i = slot(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt) allocate(keys.length << 1);
+        return null;
+    }
+
+    /**
+     * Removes key and shifts following entries back so probe
+     * chains stay intact without tombstones
+     * @param key Primitive key
+     * @return Removed value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int i = slot(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                shiftBack(i);
+                size--;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes every entry while keeping the current capacity
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Gets number of entries
+     * @return Entry count
+     */
+    public int size() { return size; }
+
+    /**
+     * Gets number of slots allocated, used to estimate memory
+     * @return Slot count
+     */
+    public int capacity() { return keys.length; }
+
+    /**
+     * Visits every entry in no particular order
+     * @param visitor Callback receiving each key and value
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Visitor<V> visitor) {
+        for (int i = 0; i < keys.length; i++)
+            if (used[i]) visitor.accept(keys[i], (V) values[i]);
+    }
+
+    /**
+     * Callback used when iterating over entries
+     * @param <V> Type of value
+     */
+    public interface Visitor<V> {
+        void accept(long key, V value);
+    }
+
+    private void shiftBack(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            if (!used[i]) break;
+            int home = slot(keys[i]);
+            // Move entry into gap if its home slot is not between gap and i
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        used[gap] = false;
+        values[gap] = null;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        keys = new long[capacity];
+        values = new Object[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+        size = 0;
+
+        // Re-insert existing entries
+        if (oldKeys != null)
+            for (int i = 0; i < oldKeys.length; i++)
+                if (oldUsed[i]) reinsert(oldKeys[i], oldValues[i]);
+    }
+
+    private void reinsert(long key, Object value) {
+        int i = slot(key);
+        while (used[i]) i = (i + 1) & mask;
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    private static int capacityFor(int expected) {
+        int capacity = 4;
+        while (capacity * LOAD_FACTOR <= expected) capacity <<= 1;
+        return capacity;
+    }
+
+}
@@ -0,0 +1,347 @@
+package index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Spatial index of protected blocks sharded by world and chunk.
+ * Worlds are keyed by name, chunks by a packed long of their
+ * coordinates and blocks by a packed int of their position
+ * inside the chunk. No Bukkit objects are referenced, so a
+ * protection costs a single int key and a value reference
+ * @param <V> Type of value stored against each block
+ */
+public class ProtectionIndex<V> {
+
+    private final HashMap<String, LongObjectMap<ChunkShard<V>>> worlds = new HashMap<>();
+    private String lastWorldName;
+    private LongObjectMap<ChunkShard<V>> lastWorld;
+    private int size;
+
+    /**
+     * Gets value assigned to block
+     * @param world Name of world
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @return Associated value or null if unprotected
+     */
+    public V get(String world, int x, int y, int z) {
+        LongObjectMap<ChunkShard<V>> chunks = world(world);
+        if (chunks == null) return null;
+        ChunkShard<V> shard = chunks.get(chunkKey(x >> 4, z >> 4));
+        return shard == null ? null : shard.get(localKey(x, y, z));
+    }
+
+    /**
+     * Assigns value to block, replacing any existing value
+     * @param world Name of world
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @param value Non-null value
+     * @return Previous value or null
+     */
+    public V put(String world, int x, int y, int z, V value) {
+        LongObjectMap<ChunkShard<V>> chunks = world(world);
+        if (chunks == null) {
+            chunks = new LongObjectMap<>();
+            worlds.put(world, chunks);
+            lastWorldName = world;
+            lastWorld = chunks;
+        }
+
+        long key = chunkKey(x >> 4, z >> 4);
+        ChunkShard<V> shard = chunks.get(key);
+        if (shard == null) chunks.put(key, shard = new ChunkShard<>());
+
+        V old = shard.put(localKey(x, y, z), value);
+        if (old == null) size++;
+        return old;
+    }
+
+    /**
+     * Removes value from block, dropping the chunk shard
+     * once it is empty
+     * @param world Name of world
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @return Removed value or null
+     */
+    public V remove(String world, int x, int y, int z) {
+        LongObjectMap<ChunkShard<V>> chunks = world(world);
+        if (chunks == null) return null;
+
+        long key = chunkKey(x >> 4, z >> 4);
+        ChunkShard<V> shard = chunks.get(key);
+        if (shard == null) return null;
+
+        V old = shard.remove(localKey(x, y, z));
+        if (old != null) {
+            size--;
+            if (shard.size() == 0) chunks.remove(key);
+        }
+        return old;
+    }
+
+    /**
+     * Checks if a chunk contains any protection
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @return Does chunk contain a protection
+     */
+    public boolean hasChunk(String world, int chunkX, int chunkZ) {
+        LongObjectMap<ChunkShard<V>> chunks = world(world);
+        return chunks != null && chunks.containsKey(chunkKey(chunkX, chunkZ));
+    }
+
+    /**
+     * Visits every protection inside a chunk
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @param visitor Callback receiving each block and value
+     */
+    public void forEachInChunk(String world, int chunkX, int chunkZ, Visitor<V> visitor) {
+        LongObjectMap<ChunkShard<V>> chunks = world(world);
+        if (chunks == null) return;
+        ChunkShard<V> shard = chunks.get(chunkKey(chunkX, chunkZ));
+        if (shard != null) shard.forEach(world, chunkX, chunkZ, visitor);
+    }
+
+    /**
+     * Drops every protection inside a chunk at once
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @return Number of protections dropped
+     */
+    public int dropChunk(String world, int chunkX, int chunkZ) {
+        LongObjectMap<ChunkShard<V>> chunks = world(world);
+        if (chunks == null) return 0;
+        ChunkShard<V> shard = chunks.remove(chunkKey(chunkX, chunkZ));
+        if (shard == null) return 0;
+        size -= shard.size();
+        return shard.size();
+    }
+
+    /**
+     * Visits every protection in every world
+     * @param visitor Callback receiving each block and value
+     */
+    public void forEach(Visitor<V> visitor) {
+        for (Map.Entry<String, LongObjectMap<ChunkShard<V>>> world: worlds.entrySet())
+            world.getValue().forEach((key, shard) ->
+                    shard.forEach(world.getKey(), (int) (key >> 32), (int) key, visitor));
+    }
+
+    /**
+     * Gets total number of protections
+     * @return Protection count
+     */
+    public int size() { return size; }
+
+    /**
+     * Counts protections of each world
+     * @return Protection count per world name
+     */
+    public Map<String, Integer> sizeByWorld() {
+        Map<String, Integer> sizes = new HashMap<>();
+        for (Map.Entry<String, LongObjectMap<ChunkShard<V>>> world: worlds.entrySet()) {
+            int[] size = {0};
+            world.getValue().forEach((key, shard) -> size[0] += shard.size());
+            sizes.put(world.getKey(), size[0]);
+        }
+        return sizes;
+    }
+
+    /**
+     * Estimates heap held by the index, assuming compressed
+     * references. Values are shared and not counted
+     * @return Estimated bytes
+     */
+    public long estimateBytes() {
+        long[] bytes = {0};
+        for (LongObjectMap<ChunkShard<V>> chunks: worlds.values()) {
+            // Map object, then key, value and used arrays
+            bytes[0] += 40 + 48 + chunks.capacity() * 13L;
+            chunks.forEach((key, shard) -> bytes[0] += 24 + 32 + shard.capacity() * 8L);
+        }
+        return bytes[0];
+    }
+
+    /**
+     * Packs chunk coordinates into a single long
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @return Packed chunk key
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Packs block coordinates into a single long, 26 bits for X
+     * and Z and 12 bits for Y
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @return Packed block key
+     */
+    public static long blockKey(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    /**
+     * Callback used when iterating over protections
+     * @param <V> Type of value
+     */
+    public interface Visitor<V> {
+        void accept(String world, int x, int y, int z, V value);
+    }
+
+    private LongObjectMap<ChunkShard<V>> world(String name) {
+        // Most events repeatedly hit the same world
+        if (name.equals(lastWorldName)) return lastWorld;
+        LongObjectMap<ChunkShard<V>> chunks = worlds.get(name);
+        if (chunks != null) {
+            lastWorldName = name;
+            lastWorld = chunks;
+        }
+        return chunks;
+    }
+
+    private static int localKey(int x, int y, int z) {
+        // 12 bits of Y followed by 4 bits each of X and Z inside the chunk
+        return ((y & 0xFFF) << 8) | ((x & 15) << 4) | (z & 15);
+    }
+
+}
+
+/**
+ * Protections of a single chunk stored in an open addressing
+ * table of packed int positions
+ * @param <V> Type of value
+ */
+class ChunkShard<V> {
+
+    private static final int EMPTY = -1; // Packed positions are never negative
+
+    private int[] keys = newKeys(4);
+    private Object[] values = new Object[4];
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        int k;
+        while ((k = keys[i]) != EMPTY) {
+            if (k == key) return (V) values[i];
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        int k;
+        while ((k = keys[i]) != EMPTY) {
+            if (k == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        // Keep load at or below three quarters
+        if (++size * 4 > keys.length * 3) grow();
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        int k;
+        while ((k = keys[i]) != EMPTY) {
+            if (k == key) {
+                V old = (V) values[i];
+                shiftBack(i, mask);
+                size--;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    int size() { return size; }
+
+    int capacity() { return keys.length; }
+
+    @SuppressWarnings("unchecked")
+    void forEach(String world, int chunkX, int chunkZ, ProtectionIndex.Visitor<V> visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            int k = keys[i];
+            if (k == EMPTY) continue;
+            int y = k >> 8;
+            if (y >= 0x800) y -= 0x1000; // Restore sign of Y
+            visitor.accept(world, (chunkX << 4) | ((k >> 4) & 15), y, (chunkZ << 4) | (k & 15), (V) values[i]);
+        }
+    }
+
+    private void shiftBack(int gap, int mask) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            int k = keys[i];
+            if (k == EMPTY) break;
+            int home = slot(k, mask);
+            // Move entry into gap if its home slot is not between gap and i
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = null;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = newKeys(oldKeys.length << 1);
+        values = new Object[oldKeys.length << 1];
+        int mask = keys.length - 1;
+
+        // Re-insert existing entries
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == EMPTY) continue;
+            int i = slot(oldKeys[j], mask);
+            while (keys[i] != EMPTY) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int[] newKeys(int capacity) {
+        int[] keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+}
@@ -0,0 +1,124 @@
+package index;
+
+import java.util.Arrays;
+
+/**
+ * Remembers whether items may move from one container to
+ * another, such as a hopper pulling from a chest. Decisions
+ * are held in a fixed size two way set associative table
+ * packed into a single long array, each set filling one cache
+ * line, so a lookup reads one set and never allocates. Every decision is dropped at
+ * once by moving to a new epoch whenever protections change.
+ * Not thread safe
+ */
+public class TransferCache {
+
+    public static final byte UNKNOWN = 0;
+    public static final byte ALLOW = 1;
+    public static final byte DENY = 2;
+
+    private static final int STRIDE = 4; // Source, destination, state and padding to keep slots aligned
+    private static final int WAYS = 2;
+
+    private final long[] table;
+    private final int mask;
+    private String[] worlds = new String[0]; // World ids are indexes into this array
+    private int epoch = 1; // Empty slots have epoch 0
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates an empty cache
+     * @param capacity Number of decisions, rounded up to a power
+     *                 of two. Should exceed the number of active
+     *                 hoppers so decisions rarely collide
+     */
+    public TransferCache(int capacity) {
+        int sets = Integer.highestOneBit(Math.max(2, capacity / WAYS - 1)) << 1;
+        table = new long[sets * WAYS * STRIDE];
+        mask = sets - 1;
+    }
+
+    /**
+     * Gets decision for a transfer
+     * @param world Name of world, compared by reference
+     * @param source Block key of container items leave
+     * @param destination Block key of container items enter
+     * @return ALLOW, DENY or UNKNOWN if not decided yet
+     */
+    public byte get(String world, long source, long destination) {
+        int set = set(source, destination);
+        long state = state(world);
+        for (int i = set; i < set + WAYS * STRIDE; i += STRIDE)
+            if (table[i] == source && table[i + 1] == destination && (table[i + 2] >>> 8) == state) {
+                hits++;
+                return (byte) table[i + 2];
+            }
+        misses++;
+        return UNKNOWN;
+    }
+
+    /**
+     * Records decision for a transfer. Once its set is full the
+     * second decision is replaced, so the first stays cached
+     * even when hoppers take turns colliding
+     * @param world Name of world
+     * @param source Block key of container items leave
+     * @param destination Block key of container items enter
+     * @param allowed May items move
+     */
+    public void put(String world, long source, long destination, boolean allowed) {
+        int i = set(source, destination);
+        if ((table[i + 2] >>> 24) == (epoch & 0xFFFFFFFFL)) i += STRIDE; // First way is in use
+        table[i] = source;
+        table[i + 1] = destination;
+        table[i + 2] = state(world) << 8 | (allowed ? ALLOW : DENY);
+    }
+
+    /**
+     * Forgets every decision, called whenever protections change
+     */
+    public void invalidate() {
+        // Wrapping back to 0 would revive empty slots
+        if (++epoch == 0) epoch = 1;
+    }
+
+    /**
+     * Gets number of transfers answered from cache
+     * @return Hit count
+     */
+    public long hits() { return hits; }
+
+    /**
+     * Gets number of transfers that had to be decided
+     * @return Miss count
+     */
+    public long misses() { return misses; }
+
+    private long state(String world) {
+        // Epoch and world id, shifted above the verdict when stored
+        return (epoch & 0xFFFFFFFFL) << 16 | worldId(world);
+    }
+
+    private int worldId(String world) {
+        // Servers have a handful of worlds, so a scan beats hashing
+        for (int i = 0; i < worlds.length; i++)
+            if (worlds[i] == world) return i;
+        for (int i = 0; i < worlds.length; i++)
+            if (worlds[i].equals(world)) return i;
+        if (worlds.length == 0xFFFF) throw new IllegalStateException("Too many worlds");
+        worlds = Arrays.copyOf(worlds, worlds.length + 1);
+        worlds[worlds.length - 1] = world;
+        return worlds.length - 1;
+    }
+
+    private int set(long source, long destination) {
+        // Mix both keys so neighbouring hoppers spread across slots
+        long h = source * 0x9E3779B97F4A7C15L + destination;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return ((int) h & mask) * WAYS * STRIDE;
+    }
+
+}
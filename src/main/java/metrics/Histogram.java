@@ -0,0 +1,140 @@
+package metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with logarithmic buckets, each power of two
+ * split into eight linear steps so any percentile is within
+ * 12.5% of the true value. Recording increments striped
+ * counters, so it is safe from any thread, never locks and
+ * only allocates when a counter is first contended
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 3; // Eight steps per power of two
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40; // Longer than 18 minutes lands in the last bucket
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates an empty histogram
+     */
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Records a duration
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0; // Clock went backwards
+        buckets[bucket(nanos)].increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Records time elapsed since a call to System.nanoTime
+     * @param startNanos Value of System.nanoTime when work began
+     */
+    public void recordSince(long startNanos) { record(System.nanoTime() - startNanos); }
+
+    /**
+     * Reads every bucket at once so percentiles agree with
+     * each other. Recording may continue meanwhile
+     * @return Copy of current counts
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) count += counts[i] = buckets[i].sum();
+        return new Snapshot(counts, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Formats a duration for reading in chat
+     * @param nanos Duration in nanoseconds
+     * @return Duration such as 850ns, 12.3us or 4.1ms
+     */
+    public static String format(long nanos) {
+        if (nanos < 1000) return nanos + "ns";
+        if (nanos < 1000000) return String.format("%.1f\u00B5s", nanos / 1e3);
+        if (nanos < TimeUnit.SECONDS.toNanos(1)) return String.format("%.1fms", nanos / 1e6);
+        return String.format("%.1fs", nanos / 1e9);
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB) return (int) nanos;
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(nanos), MAX_EXPONENT);
+        if (exponent == MAX_EXPONENT) return BUCKETS - 1;
+        int step = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB - 1);
+        return (exponent - SUB_BITS + 1) * SUB + step;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB) return bucket;
+        if (bucket == BUCKETS - 1) return Long.MAX_VALUE; // Bounded by max instead
+        int exponent = bucket / SUB + SUB_BITS - 1;
+        long lower = (long) (SUB + bucket % SUB) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Counts of a histogram at one point in time
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count, sum, max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Gets number of recorded durations
+         * @return Count
+         */
+        public long count() { return count; }
+
+        /**
+         * Gets total of recorded durations
+         * @return Sum in nanoseconds
+         */
+        public long sum() { return sum; }
+
+        /**
+         * Gets longest recorded duration
+         * @return Maximum in nanoseconds
+         */
+        public long max() { return max; }
+
+        /**
+         * Gets duration that a share of recorded durations did
+         * not exceed
+         * @param quantile Share between 0 and 1, such as 0.99
+         * @return Upper bound of matching bucket in nanoseconds,
+         *         or 0 if nothing was recorded
+         */
+        public long percentile(double quantile) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++)
+                if ((seen += counts[i]) >= rank) return Math.min(upperBound(i), max);
+            return max;
+        }
+
+    }
+
+}
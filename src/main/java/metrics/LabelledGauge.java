@@ -0,0 +1,41 @@
+package metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Values of a gauge split by one label, such as protections per
+ * world. Values are replaced all at once by their owner, so
+ * readers on other threads always see a complete set
+ */
+public class LabelledGauge {
+
+    private final String label;
+    private volatile Map<String, Long> values = Collections.emptyMap();
+
+    /**
+     * Creates a gauge without values
+     * @param label Name of label such as world
+     */
+    public LabelledGauge(String label) { this.label = label; }
+
+    /**
+     * Gets name of label
+     * @return Label name
+     */
+    public String label() { return label; }
+
+    /**
+     * Replaces every value
+     * @param values Value per label value
+     */
+    public void set(Map<String, Long> values) { this.values = Collections.unmodifiableMap(new TreeMap<>(values)); }
+
+    /**
+     * Gets current values
+     * @return Immutable value per label value, sorted
+     */
+    public Map<String, Long> values() { return values; }
+
+}
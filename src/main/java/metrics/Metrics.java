@@ -0,0 +1,100 @@
+package metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named timers, counters and gauges of work done by the plugin.
+ * Each is created once, held by the code it measures and read by
+ * commands and exporters from any thread, so anything registered
+ * here must be safe to read off the main thread
+ */
+public class Metrics {
+
+    private final Map<String, Histogram> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> adders = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, LabelledGauge> labelled = new ConcurrentSkipListMap<>();
+
+    /**
+     * Gets or creates a timer
+     * @param name Dotted name such as events.blockBreak
+     * @return Shared timer
+     */
+    public Histogram timer(String name) { return timers.computeIfAbsent(name, n -> new Histogram()); }
+
+    /**
+     * Adds a timer owned by another class
+     * @param name Dotted name such as mojang.upstream
+     * @param timer Timer to report
+     */
+    public void register(String name, Histogram timer) { timers.put(name, timer); }
+
+    /**
+     * Gets or creates a counter
+     * @param name Dotted name such as guard.protected
+     * @return Shared counter
+     */
+    public LongAdder counter(String name) {
+        return adders.computeIfAbsent(name, n -> {
+            LongAdder adder = new LongAdder();
+            counters.put(n, adder::sum);
+            return adder;
+        });
+    }
+
+    /**
+     * Adds a counter owned by another class, which only ever
+     * goes up
+     * @param name Dotted name such as mojang.requests
+     * @param counter Thread safe source of current count
+     */
+    public void counter(String name, LongSupplier counter) { counters.put(name, counter); }
+
+    /**
+     * Adds a value that may go up and down
+     * @param name Dotted name such as storage.pending
+     * @param gauge Thread safe source of current value
+     */
+    public void gauge(String name, LongSupplier gauge) { gauges.put(name, gauge); }
+
+    /**
+     * Gets or creates a value per label, such as protections
+     * per world
+     * @param name Dotted name such as protections
+     * @param label Name of label such as world
+     * @return Shared gauge
+     */
+    public LabelledGauge labelled(String name, String label) {
+        return labelled.computeIfAbsent(name, n -> new LabelledGauge(label));
+    }
+
+    /**
+     * Gets every timer
+     * @return Timers sorted by name
+     */
+    public Map<String, Histogram> timers() { return Collections.unmodifiableMap(timers); }
+
+    /**
+     * Gets every counter
+     * @return Counters sorted by name
+     */
+    public Map<String, LongSupplier> counters() { return Collections.unmodifiableMap(counters); }
+
+    /**
+     * Gets every gauge
+     * @return Gauges sorted by name
+     */
+    public Map<String, LongSupplier> gauges() { return Collections.unmodifiableMap(gauges); }
+
+    /**
+     * Gets every labelled gauge
+     * @return Labelled gauges sorted by name
+     */
+    public Map<String, LabelledGauge> labelled() { return Collections.unmodifiableMap(labelled); }
+
+}
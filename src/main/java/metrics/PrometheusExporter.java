@@ -0,0 +1,146 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+/**
+ * Serves metrics in Prometheus text format from the JDK's own
+ * HTTP server. Scrapes are answered on a single background
+ * thread and only read metrics, never the server's state
+ */
+public class PrometheusExporter {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Metrics metrics;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "EagleEye-Metrics");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Binds endpoint without serving yet
+     * @param metrics Metrics to export
+     * @param address Address and port to listen on
+     * @throws IOException Failed to bind address
+     */
+    public PrometheusExporter(Metrics metrics, InetSocketAddress address) throws IOException {
+        this.metrics = metrics;
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/metrics", this::scrape);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts answering scrapes at /metrics
+     */
+    public void start() { server.start(); }
+
+    /**
+     * Stops answering scrapes and releases the port
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Writes every metric in Prometheus text format. Timers
+     * become summaries in seconds grouped by the first part of
+     * their name, counters and gauges keep their full name
+     * @return Exposition text
+     */
+    public String render() {
+        StringBuilder out = new StringBuilder(4096);
+
+        String family = null;
+        for (Map.Entry<String, Histogram> timer: metrics.timers().entrySet()) {
+            String name = timer.getKey();
+            int dot = name.indexOf('.');
+            String metric = "eagleeye_" + snake(dot < 0 ? name : name.substring(0, dot)) + "_seconds";
+            String label = "name=\"" + escape(dot < 0 ? name : name.substring(dot + 1)) + "\"";
+            if (!metric.equals(family)) {
+                out.append("# TYPE ").append(metric).append(" summary\n");
+                family = metric;
+            }
+
+            Histogram.Snapshot s = timer.getValue().snapshot();
+            for (double q: QUANTILES)
+                out.append(metric).append('{').append(label).append(",quantile=\"").append(q).append("\"} ")
+                        .append(seconds(s.percentile(q))).append('\n');
+            out.append(metric).append("_sum{").append(label).append("} ").append(seconds(s.sum())).append('\n');
+            out.append(metric).append("_count{").append(label).append("} ").append(s.count()).append('\n');
+        }
+
+        for (Map.Entry<String, LongSupplier> counter: metrics.counters().entrySet()) {
+            String metric = "eagleeye_" + snake(counter.getKey()) + "_total";
+            out.append("# TYPE ").append(metric).append(" counter\n");
+            out.append(metric).append(' ').append(counter.getValue().getAsLong()).append('\n');
+        }
+
+        for (Map.Entry<String, LongSupplier> gauge: metrics.gauges().entrySet()) {
+            String metric = "eagleeye_" + snake(gauge.getKey());
+            out.append("# TYPE ").append(metric).append(" gauge\n");
+            out.append(metric).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+
+        for (Map.Entry<String, LabelledGauge> gauge: metrics.labelled().entrySet()) {
+            String metric = "eagleeye_" + snake(gauge.getKey());
+            out.append("# TYPE ").append(metric).append(" gauge\n");
+            for (Map.Entry<String, Long> value: gauge.getValue().values().entrySet())
+                out.append(metric).append('{').append(gauge.getValue().label()).append("=\"")
+                        .append(escape(value.getKey())).append("\"} ").append(value.getValue()).append('\n');
+        }
+
+        return out.toString();
+    }
+
+    private void scrape(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String snake(String name) {
+        // events.blockBreak becomes events_block_break
+        StringBuilder out = new StringBuilder(name.length() + 8);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) out.append('_').append(Character.toLowerCase(c));
+            else if (Character.isLetterOrDigit(c)) out.append(c);
+            else out.append('_');
+        }
+        return out.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String seconds(long nanos) { return String.format(Locale.ROOT, "%.9f", nanos / 1e9); }
+
+}
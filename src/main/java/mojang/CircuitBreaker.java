@@ -0,0 +1,139 @@
+package mojang;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Stops calling Mojang API after repeated failures. Once open,
+ * requests are refused for a backoff period which doubles each
+ * time a trial request fails, up to a limit. After the backoff
+ * a single trial request is let through and closes the breaker
+ * again if it succeeds
+ */
+public class CircuitBreaker {
+
+    /**
+     * State of breaker
+     */
+    public enum State {
+        CLOSED, // Requests flow normally
+        OPEN, // Requests are refused until backoff ends
+        HALF_OPEN, // A single trial request is in flight
+    }
+
+    private final int failureThreshold;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Consumer<State> listener;
+    private State state = State.CLOSED;
+    private int failures;
+    private long backoffNanos;
+    private long openUntil;
+    private long trips;
+
+    /**
+     * Creates a closed breaker
+     * @param failureThreshold Consecutive failures before opening
+     * @param baseBackoffMillis Backoff after first opening
+     * @param maxBackoffMillis Longest backoff
+     * @param listener Told of every change of state, from the
+     *                 thread making the request
+     */
+    public CircuitBreaker(int failureThreshold, long baseBackoffMillis, long maxBackoffMillis,
+                          Consumer<State> listener) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.baseBackoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, baseBackoffMillis));
+        this.maxBackoffNanos = Math.max(baseBackoffNanos, TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis));
+        this.listener = listener;
+    }
+
+    /**
+     * Checks if a request may be sent, letting a single trial
+     * through once backoff has ended
+     * @return May request be sent
+     */
+    public boolean allowRequest() {
+        synchronized (this) {
+            if (state == State.CLOSED) return true;
+            if (state == State.HALF_OPEN || System.nanoTime() - openUntil < 0) return false;
+            state = State.HALF_OPEN;
+        }
+        listener.accept(State.HALF_OPEN);
+        return true;
+    }
+
+    /**
+     * Records a request that got an answer from Mojang
+     */
+    public void onSuccess() {
+        synchronized (this) {
+            if (state == State.OPEN) return; // Request was sent before opening
+            failures = 0;
+            backoffNanos = 0;
+            if (state == State.CLOSED) return;
+            state = State.CLOSED;
+        }
+        listener.accept(State.CLOSED);
+    }
+
+    /**
+     * Records a failed request, opening breaker once failures
+     * reach the threshold or if the trial request failed
+     */
+    public void onFailure() {
+        synchronized (this) {
+            if (state == State.OPEN) return; // Request was sent before opening
+            if (state == State.CLOSED && ++failures < failureThreshold) return;
+            open();
+        }
+        listener.accept(State.OPEN);
+    }
+
+    /**
+     * Opens breaker immediately, used when Mojang asks for
+     * requests to slow down
+     */
+    public void trip() {
+        synchronized (this) {
+            if (state == State.OPEN) return;
+            open();
+        }
+        listener.accept(State.OPEN);
+    }
+
+    /**
+     * Returns the trial permit of a request that was never
+     * sent, so another may be tried
+     */
+    public synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN) state = State.OPEN;
+    }
+
+    /**
+     * Gets current state
+     * @return Breaker state
+     */
+    public synchronized State state() { return state; }
+
+    /**
+     * Gets current backoff
+     * @return Backoff in milliseconds, zero while healthy
+     */
+    public synchronized long backoffMillis() { return TimeUnit.NANOSECONDS.toMillis(backoffNanos); }
+
+    /**
+     * Gets number of times breaker has opened
+     * @return Trip count
+     */
+    public synchronized long trips() { return trips; }
+
+    private void open() {
+        // Double backoff every time breaker opens without recovering
+        backoffNanos = backoffNanos == 0 ? baseBackoffNanos : Math.min(maxBackoffNanos, backoffNanos * 2);
+        openUntil = System.nanoTime() + backoffNanos;
+        failures = 0;
+        state = State.OPEN;
+        trips++;
+    }
+
+}
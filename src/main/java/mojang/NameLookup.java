@@ -0,0 +1,68 @@
+package mojang;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Looks up the current username of a UUID through Mojang's
+ * profile endpoint, one UUID per request. Requests block, so
+ * are made from a background thread through the upstream gate
+ */
+public class NameLookup {
+
+    public static final String PROFILE_URL = "https://sessionserver.mojang.com/session/minecraft/profile/";
+
+    private final String endpoint;
+
+    /**
+     * Creates lookup for an endpoint, which can point at a
+     * local stub server when testing
+     * @param endpoint Profile endpoint, which the UUID without
+     *                 dashes is appended to
+     */
+    public NameLookup(String endpoint) { this.endpoint = endpoint; }
+
+    /**
+     * Requests username of a UUID
+     * @param uuid Player UUID
+     * @return Current username
+     * @throws UnknownProfileException No player has the UUID
+     * @throws RateLimitedException Mojang asked for requests to
+     *                              slow down
+     * @throws IOException Request failed
+     */
+    public String fetch(UUID uuid) throws IOException {
+        URL url = new URL(endpoint + uuid.toString().replace("-", ""));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(5000);
+
+        // Unknown UUIDs are answered with no content
+        int status = connection.getResponseCode();
+        if (status == 429)
+            throw new RateLimitedException("Mojang API rate limited name lookup");
+        if (status == HttpURLConnection.HTTP_NO_CONTENT || status == HttpURLConnection.HTTP_NOT_FOUND)
+            throw new UnknownProfileException(uuid.toString());
+        if (status != HttpURLConnection.HTTP_OK)
+            throw new IOException("Mojang API responded with " + status);
+
+        // Response is {"id": ..., "name": ..., "properties": [...]}
+        try (Reader in = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+            String name = (String) ((JSONObject) new JSONParser().parse(in)).get("name");
+            if (name == null) throw new IOException("Mojang API response has no name");
+            return name;
+        } catch (ParseException | ClassCastException e) {
+            throw new IOException("Unexpected response from Mojang API", e);
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package mojang;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects username lookups over a short window and resolves
+ * them through Mojang's bulk profile endpoint, up to 10 names
+ * per request. Requests are made one at a time on a single
+ * background thread and pass through the upstream gate
+ */
+public class ProfileBatcher {
+
+    public static final String PROFILES_URL = "https://api.mojang.com/profiles/minecraft";
+    private static final int BATCH_SIZE = 10; // Limit set by Mojang
+
+    private final URL endpoint;
+    private final Upstream upstream;
+    private final long windowMillis;
+    private final LinkedHashMap<String, CompletableFuture<UUID>> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "EagleEye-Profiles");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Creates batcher for an endpoint, which can point at a
+     * local stub server when testing
+     * @param endpoint Bulk profile endpoint
+     * @param upstream Gate requests are sent through
+     * @param windowMillis Time to wait for more names before
+     *                     sending a partial batch
+     */
+    public ProfileBatcher(URL endpoint, Upstream upstream, long windowMillis) {
+        this.endpoint = endpoint;
+        this.upstream = upstream;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Queues a username to be resolved with the next batch
+     * @param username Username to resolve
+     * @return Future completed with UUID, with an
+     *         UnknownProfileException if no such player exists
+     *         or with an IOException if the request failed
+     */
+    public CompletableFuture<UUID> resolve(String username) {
+        String key = username.toLowerCase(Locale.ROOT);
+        synchronized (pending) {
+            CompletableFuture<UUID> future = pending.get(key);
+            if (future != null) return future; // Already queued
+
+            pending.put(key, future = new CompletableFuture<>());
+            try {
+                if (pending.size() >= BATCH_SIZE) {
+                    worker.execute(this::flush); // Full batch, send now
+                } else if (!scheduled) {
+                    worker.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+                    scheduled = true;
+                }
+            } catch (RejectedExecutionException e) {
+                pending.remove(key);
+                future.completeExceptionally(new IOException("Profile lookups have stopped", e));
+            }
+            return future;
+        }
+    }
+
+    /**
+     * Stops background thread, failing any queued lookups
+     */
+    public void close() {
+        worker.shutdownNow();
+        synchronized (pending) {
+            for (CompletableFuture<UUID> future: pending.values())
+                future.completeExceptionally(new IOException("Profile lookups have stopped"));
+            pending.clear();
+        }
+    }
+
+    private void flush() {
+        while (true) {
+            // Take next batch of up to 10 names
+            Map<String, CompletableFuture<UUID>> batch = new HashMap<>();
+            synchronized (pending) {
+                Iterator<Map.Entry<String, CompletableFuture<UUID>>> it = pending.entrySet().iterator();
+                while (it.hasNext() && batch.size() < BATCH_SIZE) {
+                    Map.Entry<String, CompletableFuture<UUID>> e = it.next();
+                    batch.put(e.getKey(), e.getValue());
+                    it.remove();
+                }
+                if (batch.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            send(batch);
+        }
+    }
+
+    private void send(Map<String, CompletableFuture<UUID>> batch) {
+        try {
+            Map<String, UUID> found = upstream.call(() -> request(batch.keySet()));
+            for (Map.Entry<String, CompletableFuture<UUID>> e: batch.entrySet()) {
+                UUID uuid = found.get(e.getKey());
+                if (uuid != null)
+                    e.getValue().complete(uuid);
+                else
+                    e.getValue().completeExceptionally(new UnknownProfileException(e.getKey()));
+            }
+        } catch (Exception e) {
+            for (CompletableFuture<UUID> future: batch.values())
+                future.completeExceptionally(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, UUID> request(Collection<String> usernames) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(5000);
+        connection.setRequestProperty("Content-Type", "application/json");
+
+        // Body is a JSON array of usernames
+        JSONArray body = new JSONArray();
+        body.addAll(usernames);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.toJSONString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        int status = connection.getResponseCode();
+        if (status == 429)
+            throw new RateLimitedException("Mojang API rate limited profile lookup");
+        if (status != HttpURLConnection.HTTP_OK)
+            throw new IOException("Mojang API responded with " + status);
+
+        // Response is a JSON array of {"id": ..., "name": ...} for names that exist
+        Map<String, UUID> found = new HashMap<>();
+        try (Reader in = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+            for (Object o: (JSONArray) new JSONParser().parse(in)) {
+                JSONObject profile = (JSONObject) o;
+                String id = (String) profile.get("id");
+                found.put(((String) profile.get("name")).toLowerCase(Locale.ROOT), new UUID(
+                        Long.parseUnsignedLong(id.substring(0, 16), 16),
+                        Long.parseUnsignedLong(id.substring(16), 16)));
+            }
+        } catch (ParseException | ClassCastException | NullPointerException | NumberFormatException e) {
+            throw new IOException("Unexpected response from Mojang API", e);
+        }
+        return found;
+    }
+
+}
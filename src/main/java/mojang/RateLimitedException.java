@@ -0,0 +1,16 @@
+package mojang;
+
+import java.io.IOException;
+
+/**
+ * Thrown when Mojang API responds with HTTP 429
+ */
+public class RateLimitedException extends IOException {
+
+    /**
+     * Constructor used to describe the rejected request
+     * @param message Description of request
+     */
+    public RateLimitedException(String message) { super(message); }
+
+}
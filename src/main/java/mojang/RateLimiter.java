@@ -0,0 +1,68 @@
+package mojang;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting how often Mojang API is called. The
+ * bucket holds up to burst tokens and refills at a steady
+ * rate, each request taking one token
+ */
+public class RateLimiter {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    /**
+     * Creates a full bucket
+     * @param perMinute Sustained requests allowed per minute
+     * @param burst Requests allowed at once after a quiet period
+     */
+    public RateLimiter(int perMinute, int burst) {
+        this.capacity = Math.max(1, burst);
+        this.tokensPerNano = Math.max(1, perMinute) / (double) TimeUnit.MINUTES.toNanos(1);
+        this.tokens = capacity;
+    }
+
+    /**
+     * Takes a token if one is available
+     * @return Zero if a token was taken, else the time in
+     *         nanoseconds until one becomes available
+     */
+    public synchronized long tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+
+        if (tokens >= 1) {
+            tokens--;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Takes a token, waiting for one if necessary. Only call
+     * from a background thread
+     * @param maxWaitNanos Longest time to wait
+     * @return Was a token taken before the wait ran out
+     * @throws InterruptedException Interrupted while waiting
+     */
+    public boolean acquire(long maxWaitNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        long wait;
+        while ((wait = tryAcquire()) > 0) {
+            if (System.nanoTime() + wait - deadline > 0) return false;
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return true;
+    }
+
+    /**
+     * Gets number of whole tokens left, without refilling
+     * @return Available tokens
+     */
+    public synchronized int available() { return (int) tokens; }
+
+}
@@ -0,0 +1,16 @@
+package mojang;
+
+import java.io.IOException;
+
+/**
+ * Thrown when Mojang reports that no player has the username
+ */
+public class UnknownProfileException extends IOException {
+
+    /**
+     * Constructor used to name the unknown username
+     * @param username Username that does not exist
+     */
+    public UnknownProfileException(String username) { super("No player named " + username); }
+
+}
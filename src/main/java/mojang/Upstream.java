@@ -0,0 +1,133 @@
+package mojang;
+
+import metrics.Histogram;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single gate every Mojang API request passes through. A rate
+ * limiter keeps bursts within Mojang's limits and a circuit
+ * breaker stops requests while Mojang is failing or asking for
+ * requests to slow down
+ */
+public class Upstream {
+
+    private final RateLimiter limiter;
+    private final CircuitBreaker breaker;
+    private final long maxWaitNanos;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final Histogram latency = new Histogram();
+
+    /**
+     * Creates gate from its limiter and breaker
+     * @param limiter Limits request rate
+     * @param breaker Stops requests after failures
+     * @param maxWaitMillis Longest a request waits for the
+     *                      limiter before being refused
+     */
+    public Upstream(RateLimiter limiter, CircuitBreaker breaker, long maxWaitMillis) {
+        this.limiter = limiter;
+        this.breaker = breaker;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Sends a request if breaker and limiter allow it, which
+     * may wait for the limiter. Only call from a background
+     * thread
+     * @param request Request to Mojang API
+     * @param <V> Type of response
+     * @return Response to request
+     * @throws UpstreamUnavailableException Request was not sent
+     * @throws Exception Request failed
+     */
+    public <V> V call(Callable<V> request) throws Exception {
+        if (!breaker.allowRequest()) {
+            rejected.increment();
+            throw new UpstreamUnavailableException("Mojang API is backing off for " + breaker.backoffMillis() + "ms");
+        }
+
+        try {
+            if (!limiter.acquire(maxWaitNanos)) {
+                breaker.onAbandoned();
+                rejected.increment();
+                throw new UpstreamUnavailableException("Too many Mojang API requests");
+            }
+        } catch (InterruptedException e) {
+            breaker.onAbandoned();
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException("Interrupted waiting for Mojang API");
+        }
+
+        requests.increment();
+        long start = System.nanoTime();
+        try {
+            V response = request.call();
+            breaker.onSuccess();
+            return response;
+        } catch (UnknownProfileException e) {
+            breaker.onSuccess(); // Mojang answered, the player just does not exist
+            throw e;
+        } catch (RateLimitedException e) {
+            rateLimited.increment();
+            failures.increment();
+            breaker.trip();
+            throw e;
+        } catch (Exception e) {
+            failures.increment();
+            breaker.onFailure();
+            throw e;
+        } finally {
+            latency.recordSince(start);
+        }
+    }
+
+    /**
+     * Gets circuit breaker guarding requests
+     * @return Circuit breaker
+     */
+    public CircuitBreaker breaker() { return breaker; }
+
+    /**
+     * Gets rate limiter of requests
+     * @return Rate limiter
+     */
+    public RateLimiter limiter() { return limiter; }
+
+    /**
+     * Gets number of requests sent to Mojang
+     * @return Request count
+     */
+    public long requests() { return requests.sum(); }
+
+    /**
+     * Gets number of sent requests that failed
+     * @return Failure count
+     */
+    public long failures() { return failures.sum(); }
+
+    /**
+     * Gets number of requests answered with HTTP 429
+     * @return Rate limited count
+     */
+    public long rateLimited() { return rateLimited.sum(); }
+
+    /**
+     * Gets number of requests refused without being sent
+     * @return Rejected count
+     */
+    public long rejected() { return rejected.sum(); }
+
+    /**
+     * Gets time taken by sent requests, excluding any wait for
+     * the limiter
+     * @return Request latency
+     */
+    public Histogram latency() { return latency; }
+
+}
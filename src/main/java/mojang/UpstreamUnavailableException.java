@@ -0,0 +1,17 @@
+package mojang;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling Mojang API while it is being
+ * backed off from or no request can be made in time
+ */
+public class UpstreamUnavailableException extends IOException {
+
+    /**
+     * Constructor used to give the reason
+     * @param message Reason request was not sent
+     */
+    public UpstreamUnavailableException(String message) { super(message); }
+
+}
@@ -0,0 +1,61 @@
+package storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces files so that a crash at any point leaves either the
+ * old or the new content, never a truncated mix. Content is
+ * written to a temporary file beside the target and renamed
+ * over it once complete
+ */
+public final class AtomicFile {
+
+    private AtomicFile() {}
+
+    /**
+     * Replaces content of a file
+     * @param file File to replace, created if missing
+     * @param content New content
+     * @param sync Force content and rename to disk before
+     *             returning, so they also survive a power loss
+     * @return Number of bytes written
+     * @throws IOException Failed to write or rename, the file
+     *                     then still has its old content
+     */
+    public static long write(File file, String content, boolean sync) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(bytes);
+            if (sync) out.getFD().sync(); // Content must be on disk before the rename is
+        }
+
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (sync) syncDirectory(file.getAbsoluteFile().getParentFile());
+        return bytes.length;
+    }
+
+    private static void syncDirectory(File directory) {
+        // Makes the rename itself durable, directories cannot be opened on Windows where it already is
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // Rename has still happened
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+package storage;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.Consumer;
+
+/**
+ * Append-only file of single line change records. Records are
+ * replayed on top of the last snapshot during startup and the
+ * journal is reset once a newer snapshot has been written.
+ * Records reach the operating system as soon as they are
+ * appended, so they survive the process being killed. Forcing
+ * them to disk, which is what survives a power loss, is
+ * either done on every append or batched by calling sync.
+ * Not thread safe, callers are expected to use a single writer
+ */
+public class Journal implements Closeable {
+
+    private final File file;
+    private final boolean syncEachAppend;
+    private FileOutputStream stream;
+    private Writer out;
+    private int records;
+    private boolean unsynced;
+
+    /**
+     * Opens or creates journal file for appending, leaving it
+     * to the operating system when records reach the disk
+     * @param file Journal file
+     * @throws IOException Failed to open file
+     */
+    public Journal(File file) throws IOException { this(file, false); }
+
+    /**
+     * Opens or creates journal file for appending
+     * @param file Journal file
+     * @param syncEachAppend Force every record to disk before
+     *                       append returns, instead of on sync
+     * @throws IOException Failed to open file
+     */
+    public Journal(File file, boolean syncEachAppend) throws IOException {
+        this.file = file;
+        this.syncEachAppend = syncEachAppend;
+        this.out = open(true);
+    }
+
+    /**
+     * Replays every complete record currently in the journal.
+     * A trailing record without a line break was torn by a
+     * crash and is ignored
+     * @param consumer Callback receiving each record
+     * @return Number of records replayed
+     * @throws IOException Failed to read file
+     */
+    public int replay(Consumer<String> consumer) throws IOException {
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        int start = 0, end;
+        int replayed = 0;
+        while ((end = content.indexOf('\n', start)) != -1) {
+            if (end > start) {
+                consumer.accept(content.substring(start, end));
+                replayed++;
+            }
+            start = end + 1;
+        }
+
+        // Cut off torn record so new records start on a fresh line
+        if (start < content.length()) {
+            out.close();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(content.substring(0, start).getBytes(StandardCharsets.UTF_8).length);
+            }
+            out = open(true);
+        }
+
+        records = replayed;
+        return replayed;
+    }
+
+    /**
+     * Appends a record and hands it to the operating system
+     * @param record Single line record
+     * @throws IOException Failed to write record
+     */
+    public void append(String record) throws IOException {
+        out.write(record);
+        out.write('\n');
+        out.flush();
+        records++;
+        unsynced = true;
+        if (syncEachAppend) sync();
+    }
+
+    /**
+     * Forces records appended since the last sync to disk. Does
+     * nothing if there are none, so it is cheap to call often
+     * @throws IOException Failed to sync file
+     */
+    public void sync() throws IOException {
+        if (!unsynced) return;
+        stream.getFD().sync();
+        unsynced = false;
+    }
+
+    /**
+     * Gets number of records since the last reset
+     * @return Record count
+     */
+    public int size() { return records; }
+
+    /**
+     * Empties the journal, only to be called once all records
+     * have been captured by a snapshot
+     * @throws IOException Failed to truncate file
+     */
+    public void reset() throws IOException {
+        out.close();
+        out = open(false);
+        records = 0;
+        unsynced = false; // Nothing left that a crash could lose
+    }
+
+    /**
+     * Syncs and closes underlying file
+     * @throws IOException Failed to sync or close file
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    private Writer open(boolean append) throws IOException {
+        stream = new FileOutputStream(file, append);
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+    }
+
+}
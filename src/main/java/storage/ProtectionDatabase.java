@@ -0,0 +1,291 @@
+package storage;
+
+import index.ProtectionIndex;
+
+import java.io.File;
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Protections kept in an embedded SQLite database, clustered by
+ * world and chunk so a chunk is read with a single range scan.
+ * Owners are also kept in a table of their own, indexed by
+ * owner, so protections of a player can be found without a
+ * full scan. Changes are held until commit, which writes all
+ * of them in one transaction, keeping only the latest change
+ * of each block. Not thread safe, callers are expected to use
+ * a single writer
+ */
+public class ProtectionDatabase implements AutoCloseable {
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS protections (world TEXT NOT NULL, chunk INTEGER NOT NULL, " +
+                    "x INTEGER NOT NULL, y INTEGER NOT NULL, z INTEGER NOT NULL, owners TEXT NOT NULL, " +
+                    "PRIMARY KEY (world, chunk, x, y, z)) WITHOUT ROWID",
+            "CREATE TABLE IF NOT EXISTS owners (world TEXT NOT NULL, chunk INTEGER NOT NULL, " +
+                    "x INTEGER NOT NULL, y INTEGER NOT NULL, z INTEGER NOT NULL, owner TEXT NOT NULL, " +
+                    "PRIMARY KEY (world, chunk, x, y, z, owner)) WITHOUT ROWID",
+            "CREATE INDEX IF NOT EXISTS owners_by_owner ON owners (owner)",
+            "CREATE TABLE IF NOT EXISTS meta (key TEXT PRIMARY KEY, value TEXT NOT NULL)"
+    };
+
+    private final Connection connection;
+    private final PreparedStatement upsert, delete, deleteOwners, insertOwner, selectChunk, selectOwned, count;
+    private final PreparedStatement selectMeta, upsertMeta;
+    private final Map<String, Change> changes = new LinkedHashMap<>();
+    private final Map<String, String> meta = new LinkedHashMap<>();
+
+    /**
+     * Opens or creates a database in write-ahead log mode
+     * @param file Database file
+     * @param synchronous When commits are forced to disk: FULL
+     *                    on every commit, NORMAL at checkpoints,
+     *                    or OFF to leave it to the operating system
+     * @throws SQLException Failed to open database or find driver
+     */
+    public ProtectionDatabase(File file, String synchronous) throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC"); // Bundled with Spigot
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite driver not found", e);
+        }
+
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            // Readers never wait on the writer and commits only append to the log
+            statement.execute("PRAGMA journal_mode = WAL");
+            statement.execute("PRAGMA synchronous = " + synchronous);
+            for (String sql: SCHEMA) statement.execute(sql);
+        }
+        connection.setAutoCommit(false);
+
+        upsert = connection.prepareStatement(
+                "INSERT OR REPLACE INTO protections (world, chunk, x, y, z, owners) VALUES (?, ?, ?, ?, ?, ?)");
+        delete = connection.prepareStatement(
+                "DELETE FROM protections WHERE world = ? AND chunk = ? AND x = ? AND y = ? AND z = ?");
+        deleteOwners = connection.prepareStatement(
+                "DELETE FROM owners WHERE world = ? AND chunk = ? AND x = ? AND y = ? AND z = ?");
+        insertOwner = connection.prepareStatement(
+                "INSERT OR IGNORE INTO owners (world, chunk, x, y, z, owner) VALUES (?, ?, ?, ?, ?, ?)");
+        selectChunk = connection.prepareStatement(
+                "SELECT x, y, z, owners FROM protections WHERE world = ? AND chunk = ?");
+        selectOwned = connection.prepareStatement(
+                "SELECT world, x, y, z FROM owners WHERE owner = ?");
+        count = connection.prepareStatement("SELECT COUNT(*) FROM protections");
+        selectMeta = connection.prepareStatement("SELECT value FROM meta WHERE key = ?");
+        upsertMeta = connection.prepareStatement("INSERT OR REPLACE INTO meta (key, value) VALUES (?, ?)");
+    }
+
+    /**
+     * Sets owners of a block once committed
+     * @param world Name of world
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @param owners Owner UUIDs, in order
+     */
+    public void put(String world, int x, int y, int z, List<String> owners) {
+        changes.put(world + ":" + x + ":" + y + ":" + z, new Change(world, x, y, z, owners));
+    }
+
+    /**
+     * Removes protection of a block once committed
+     * @param world Name of world
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     */
+    public void remove(String world, int x, int y, int z) { put(world, x, y, z, null); }
+
+    /**
+     * Sets a value kept alongside protections once committed,
+     * in the same transaction as changes put before commit
+     * @param key Name of value
+     * @param value Value to keep
+     */
+    public void putMeta(String key, String value) { meta.put(key, value); }
+
+    /**
+     * Reads a committed value kept alongside protections
+     * @param key Name of value
+     * @return Value, or null if never set
+     * @throws SQLException Failed to read value
+     */
+    public String getMeta(String key) throws SQLException {
+        selectMeta.setString(1, key);
+        try (ResultSet rows = selectMeta.executeQuery()) {
+            return rows.next() ? rows.getString(1) : null;
+        } finally {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Gets number of changes waiting for commit
+     * @return Pending change count
+     */
+    public int pending() { return changes.size(); }
+
+    /**
+     * Writes every pending change and value in a single
+     * transaction. On failure nothing is written and changes
+     * stay pending
+     * @return Number of blocks changed
+     * @throws SQLException Failed to write changes
+     */
+    public int commit() throws SQLException {
+        if (changes.isEmpty() && meta.isEmpty()) return 0;
+        try {
+            for (Change change: changes.values()) {
+                long chunk = ProtectionIndex.chunkKey(change.x >> 4, change.z >> 4);
+                bind(deleteOwners, change, chunk).addBatch();
+                if (change.owners == null) {
+                    bind(delete, change, chunk).addBatch();
+                    continue;
+                }
+                bind(upsert, change, chunk).setString(6, String.join(",", change.owners));
+                upsert.addBatch();
+                for (String owner: change.owners) {
+                    bind(insertOwner, change, chunk).setString(6, owner);
+                    insertOwner.addBatch();
+                }
+            }
+
+            // Blocks appear once per batch, so statements may run grouped by kind
+            deleteOwners.executeBatch();
+            delete.executeBatch();
+            upsert.executeBatch();
+            insertOwner.executeBatch();
+            for (Map.Entry<String, String> entry: meta.entrySet()) {
+                upsertMeta.setString(1, entry.getKey());
+                upsertMeta.setString(2, entry.getValue());
+                upsertMeta.addBatch();
+            }
+            upsertMeta.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            for (PreparedStatement statement: new PreparedStatement[] {deleteOwners, delete, upsert, insertOwner,
+                    upsertMeta})
+                statement.clearBatch();
+            throw e;
+        }
+
+        int committed = changes.size();
+        changes.clear();
+        meta.clear();
+        return committed;
+    }
+
+    /**
+     * Reads every committed protection inside a chunk
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @param consumer Callback receiving each protection
+     * @throws SQLException Failed to read chunk
+     */
+    public void readChunk(String world, int chunkX, int chunkZ, Row consumer) throws SQLException {
+        selectChunk.setString(1, world);
+        selectChunk.setLong(2, ProtectionIndex.chunkKey(chunkX, chunkZ));
+        try (ResultSet rows = selectChunk.executeQuery()) {
+            while (rows.next())
+                consumer.accept(world, rows.getInt(1), rows.getInt(2), rows.getInt(3), rows.getString(4));
+        } finally {
+            connection.commit(); // Ends read transaction so checkpoints are not held back
+        }
+    }
+
+    /**
+     * Reads location of every committed block an owner holds
+     * @param owner Owner UUID
+     * @param consumer Callback receiving each location, owners
+     *                 are always null
+     * @throws SQLException Failed to read owner
+     */
+    public void readOwned(String owner, Row consumer) throws SQLException {
+        selectOwned.setString(1, owner);
+        try (ResultSet rows = selectOwned.executeQuery()) {
+            while (rows.next())
+                consumer.accept(rows.getString(1), rows.getInt(2), rows.getInt(3), rows.getInt(4), null);
+        } finally {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Counts committed protections
+     * @return Protection count
+     * @throws SQLException Failed to count
+     */
+    public int count() throws SQLException {
+        try (ResultSet rows = count.executeQuery()) {
+            return rows.next() ? rows.getInt(1) : 0;
+        } finally {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Commits pending changes, folds the log into the database
+     * and closes it
+     * @throws SQLException Failed to commit or close
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            commit();
+            try (Statement statement = connection.createStatement()) {
+                connection.setAutoCommit(true);
+                statement.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private PreparedStatement bind(PreparedStatement statement, Change change, long chunk) throws SQLException {
+        statement.setString(1, change.world);
+        statement.setLong(2, chunk);
+        statement.setInt(3, change.x);
+        statement.setInt(4, change.y);
+        statement.setInt(5, change.z);
+        return statement;
+    }
+
+    /**
+     * Receives protections read from the database
+     */
+    public interface Row {
+
+        /**
+         * Called once per protection
+         * @param world Name of world
+         * @param x Block X
+         * @param y Block Y
+         * @param z Block Z
+         * @param owners Comma separated owner UUIDs, in order
+         */
+        void accept(String world, int x, int y, int z, String owners);
+
+    }
+
+    private static class Change {
+
+        final String world;
+        final int x, y, z;
+        final List<String> owners; // Null if removed
+
+        Change(String world, int x, int y, int z, List<String> owners) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.owners = owners;
+        }
+
+    }
+
+}
@@ -0,0 +1,295 @@
+package storage;
+
+import metrics.Histogram;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import trace.Trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Protections kept in YAML region files, each holding the
+ * protections of 32x32 chunks keyed by chunk then block. A
+ * region is read once one of its chunks loads and kept until
+ * all of them unload. Changes are appended to a journal, then
+ * folded into the region files once enough have accumulated.
+ * Region files are replaced atomically and the journal is only
+ * reset once they are on disk. Not thread safe, callers are
+ * expected to use a single writer
+ */
+public class RegionFiles implements AutoCloseable {
+
+    private final File folder;
+    private final Journal journal;
+    private final int compactAfter;
+    private final boolean syncRegions;
+    private final Histogram saves;
+    private final HashMap<String, Region> regions = new HashMap<>();
+
+    /**
+     * Opens region files and their journal
+     * @param folder Folder holding a folder of region files per
+     *               world
+     * @param journal Journal file
+     * @param compactAfter Changes journaled before they are
+     *                     folded into region files
+     * @param syncIntervalMillis 0 syncs every change, negative
+     *                           leaves syncing to the operating
+     *                           system, otherwise the caller
+     *                           syncs the journal every interval
+     * @param saves Timer recording each region file written
+     * @throws IOException Failed to open journal
+     */
+    public RegionFiles(File folder, File journal, int compactAfter, int syncIntervalMillis, Histogram saves)
+            throws IOException {
+        this.folder = folder;
+        this.journal = new Journal(journal, syncIntervalMillis == 0);
+        this.compactAfter = compactAfter;
+        this.syncRegions = syncIntervalMillis >= 0;
+        this.saves = saves;
+    }
+
+    /**
+     * Applies changes journaled since the last compaction
+     * @return Number of changes replayed
+     * @throws IOException Failed to read journal
+     */
+    public int replay() throws IOException { return journal.replay(this::apply); }
+
+    /**
+     * Journals a change, then applies it to its region in memory.
+     * The region is only written by a later compaction
+     * @param world Name of world
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @param owners Owner UUIDs, in order, or null to remove
+     * @throws IOException Failed to journal change, which is
+     *                     still applied in memory
+     */
+    public void write(String world, int x, int y, int z, List<String> owners) throws IOException {
+        String xyz = world + ":" + x + ":" + y + ":" + z;
+        try {
+            // Journal first so the change survives a crash before the next compaction
+            journal.append(owners == null ? "R\t" + xyz : "P\t" + xyz + "\t" + String.join(",", owners));
+        } finally {
+            set(xyz, owners);
+        }
+    }
+
+    /**
+     * Applies a change without journaling it, used to migrate
+     * protected.yml, which is kept until a compaction succeeds
+     * @param xyz Block as world:x:y:z
+     * @param owners Owner UUIDs, in order, or null to remove
+     */
+    public void set(String xyz, List<String> owners) {
+        // Split world:x:y:z into region, chunk and block
+        String[] loc = xyz.split(":");
+        int x = parse(loc[1]), y = parse(loc[2]), z = parse(loc[3]);
+        Region region = region(loc[0], x >> 9, z >> 9);
+        String chunk = (x >> 4) + "," + (z >> 4);
+
+        region.conf.set(chunk + "." + x + "," + y + "," + z, owners);
+        ConfigurationSection section = region.conf.getConfigurationSection(chunk);
+        if (section != null && section.getKeys(false).isEmpty())
+            region.conf.set(chunk, null); // Drop empty chunk
+        region.dirty = true;
+    }
+
+    /**
+     * Checks if enough changes have been journaled to fold them
+     * into region files
+     * @return Should compact be called
+     */
+    public boolean shouldCompact() { return journal.size() >= compactAfter; }
+
+    /**
+     * Forces journaled changes to disk
+     * @throws IOException Failed to sync
+     */
+    public void sync() throws IOException { journal.sync(); }
+
+    /**
+     * Reads protections of a chunk that has loaded, keeping its
+     * region in memory until all of the region's chunks unload
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @param consumer Callback receiving each protection
+     */
+    public void loadChunk(String world, int chunkX, int chunkZ, Row consumer) {
+        Region region = region(world, chunkX >> 5, chunkZ >> 5);
+        region.loadedChunks++;
+        ConfigurationSection chunk = region.conf.getConfigurationSection(chunkX + "," + chunkZ);
+        if (chunk != null) read(world, chunk, consumer);
+    }
+
+    /**
+     * Releases a chunk that has unloaded, writing and evicting
+     * its region once none of the region's chunks are loaded
+     * @param world Name of world
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @throws IOException Failed to write region, which is kept
+     *                     and retried by the next compaction
+     */
+    public void unloadChunk(String world, int chunkX, int chunkZ) throws IOException {
+        String key = regionKey(world, chunkX >> 5, chunkZ >> 5);
+        Region region = regions.get(key);
+        if (region == null || --region.loadedChunks > 0) return;
+
+        if (region.dirty) save(region);
+        regions.remove(key);
+    }
+
+    /**
+     * Writes every changed region, evicts those no longer loaded
+     * and resets the journal once all are on disk
+     * @throws IOException Failed to write a region, whose
+     *                     changes are kept in the journal, or
+     *                     to reset the journal
+     */
+    public void compact() throws IOException {
+        IOException failed = null;
+        Iterator<Region> it = regions.values().iterator();
+        while (it.hasNext()) {
+            Region region = it.next();
+            try {
+                if (region.dirty) save(region);
+                if (region.loadedChunks <= 0) it.remove();
+            } catch (IOException e) {
+                // Other regions are still written
+                if (failed == null) failed = e;
+                else failed.addSuppressed(e);
+            }
+        }
+
+        // Journal still holds changes of any region that failed to save
+        if (failed != null) throw failed;
+        journal.reset();
+    }
+
+    /**
+     * Reads every protection from the region files on disk, used
+     * to move them to another store. Must only be called once
+     * compacted
+     * @param consumer Callback receiving each protection
+     */
+    public void forEach(Row consumer) {
+        File[] worlds = folder.listFiles(File::isDirectory);
+        if (worlds == null) return;
+        for (File world: worlds) {
+            File[] files = world.listFiles((dir, name) -> name.startsWith("r.") && name.endsWith(".yml"));
+            if (files == null) continue;
+            for (File file: files) {
+                FileConfiguration conf = YamlConfiguration.loadConfiguration(file);
+                for (String chunk: conf.getKeys(false)) {
+                    ConfigurationSection section = conf.getConfigurationSection(chunk);
+                    if (section != null) read(world.getName(), section, consumer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the journal, without compacting
+     * @throws IOException Failed to close journal
+     */
+    @Override
+    public void close() throws IOException { journal.close(); }
+
+    private void apply(String record) {
+        // Records are either "P<tab>xyz<tab>uuids" or "R<tab>xyz"
+        String[] parts = record.split("\t");
+        if (parts[0].equals("P") && parts.length == 3)
+            set(parts[1], Arrays.asList(parts[2].split(",")));
+        else if (parts[0].equals("R") && parts.length == 2)
+            set(parts[1], null);
+    }
+
+    private void read(String world, ConfigurationSection chunk, Row consumer) {
+        // Every block inside chunk
+        for (String xyz: chunk.getKeys(false)) {
+            String[] loc = xyz.split(",");
+            consumer.accept(world, parse(loc[0]), parse(loc[1]), parse(loc[2]), chunk.getStringList(xyz));
+        }
+    }
+
+    private Region region(String world, int regionX, int regionZ) {
+        String key = regionKey(world, regionX, regionZ);
+        Region region = regions.get(key);
+        if (region == null) {
+            File file = new File(folder, key + ".yml");
+            region = new Region(file, YamlConfiguration.loadConfiguration(file));
+            regions.put(key, region);
+        }
+        return region;
+    }
+
+    private void save(Region region) throws IOException {
+        long start = System.nanoTime();
+        Object trace = Trace.beginSave(region.file.getPath());
+        long bytes = -1;
+        try {
+            if (!region.file.getParentFile().exists() && !region.file.getParentFile().mkdirs())
+                throw new IOException("Failed to create folder " + region.file.getParentFile().getName());
+            // Replace region file without ever leaving it half written
+            bytes = AtomicFile.write(region.file, region.conf.saveToString(), syncRegions);
+            region.dirty = false;
+            saves.recordSince(start);
+        } catch (IOException e) {
+            throw new IOException("Failed to update " + region.file.getName(), e);
+        } finally {
+            Trace.endSave(trace, bytes);
+        }
+    }
+
+    private String regionKey(String world, int regionX, int regionZ) {
+        // Region files are grouped in a folder per world
+        return world + File.separator + "r." + regionX + "." + regionZ;
+    }
+
+    private int parse(String coordinate) {
+        // Older entries may have been written as floats
+        return (int) Float.parseFloat(coordinate);
+    }
+
+    /**
+     * Receives protections read from region files
+     */
+    public interface Row {
+
+        /**
+         * Called once per protection
+         * @param world Name of world
+         * @param x Block X
+         * @param y Block Y
+         * @param z Block Z
+         * @param owners Owner UUIDs, in order
+         */
+        void accept(String world, int x, int y, int z, List<String> owners);
+
+    }
+
+    /**
+     * Protections of a 32x32 chunk area as stored on disk
+     */
+    private static class Region {
+
+        final File file;
+        final FileConfiguration conf;
+        boolean dirty;
+        int loadedChunks;
+
+        Region(File file, FileConfiguration conf) {
+            this.file = file;
+            this.conf = conf;
+        }
+
+    }
+
+}
@@ -0,0 +1,125 @@
+package trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event types. Only loaded once Trace has found
+ * jdk.jfr, so nothing else may refer to these classes
+ */
+final class JfrEvents {
+
+    // Checked before allocating, as events are nearly always disabled
+    private static final EventType GUARD_CHECK = EventType.getEventType(GuardCheck.class);
+    private static final EventType LOOKUP = EventType.getEventType(Lookup.class);
+    private static final EventType SAVE = EventType.getEventType(Save.class);
+
+    private JfrEvents() {}
+
+    static Object beginGuardCheck() {
+        if (!GUARD_CHECK.isEnabled()) return null;
+        GuardCheck event = new GuardCheck();
+        event.begin();
+        return event;
+    }
+
+    static void endGuardCheck(Object e, String world, int x, int y, int z, int owners, String status) {
+        GuardCheck event = (GuardCheck) e;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.world = world;
+        event.x = x;
+        event.y = y;
+        event.z = z;
+        event.owners = owners;
+        event.status = status;
+        event.commit();
+    }
+
+    static Object beginLookup(String kind, Object key) {
+        if (!LOOKUP.isEnabled()) return null;
+        Lookup event = new Lookup();
+        event.kind = kind;
+        event.key = key.toString();
+        event.begin();
+        return event;
+    }
+
+    static void lookupSource(Object e, String source) {
+        Lookup event = (Lookup) e;
+        event.source = source;
+        event.cacheHit = source.equals("memory") || source.equals("server");
+    }
+
+    static void endLookup(Object e, Throwable error) {
+        Lookup event = (Lookup) e;
+        event.end();
+        if (!event.shouldCommit()) return;
+        if (error != null) event.error = error.getClass().getSimpleName();
+        else if (event.source == null) event.source = "stale";
+        event.commit();
+    }
+
+    static Object beginSave(String file) {
+        if (!SAVE.isEnabled()) return null;
+        Save event = new Save();
+        event.file = file;
+        event.begin();
+        return event;
+    }
+
+    static void endSave(Object e, long bytes) {
+        Save event = (Save) e;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    @Name("eagleeye.GuardCheck")
+    @Label("Guard Check")
+    @Category({"EagleEye", "Guard"})
+    @Description("Check of whether a player may use a block")
+    @Threshold("50 us")
+    @StackTrace(false)
+    static class GuardCheck extends Event {
+        @Label("World") String world;
+        @Label("X") int x;
+        @Label("Y") int y;
+        @Label("Z") int z;
+        @Label("Owners") @Description("Number of owners, 0 if unprotected") int owners;
+        @Label("Status") String status;
+    }
+
+    @Name("eagleeye.Lookup")
+    @Label("Profile Lookup")
+    @Category({"EagleEye", "Mojang"})
+    @Description("Lookup of a UUID by username or a username by UUID")
+    @StackTrace(false)
+    static class Lookup extends Event {
+        @Label("Kind") @Description("Either uuid or name") String kind;
+        @Label("Key") @Description("Username or UUID looked up") String key;
+        @Label("Source") @Description("Tier that answered: memory, server, disk, mojang or stale, " +
+                "or coalesced if it joined a lookup in flight") String source;
+        @Label("Cache Hit") @Description("Answered without waiting for disk or Mojang") boolean cacheHit;
+        @Label("Error") String error;
+    }
+
+    @Name("eagleeye.Save")
+    @Label("Protection Save")
+    @Category({"EagleEye", "Storage"})
+    @Description("Write of a region file to disk")
+    @StackTrace(false)
+    static class Save extends Event {
+        @Label("File") String file;
+        @Label("Bytes Written") @DataAmount long bytes;
+    }
+
+}
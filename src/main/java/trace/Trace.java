@@ -0,0 +1,97 @@
+package trace;
+
+/**
+ * Java Flight Recorder events around guard checks, Mojang
+ * lookups and region saves. Callers hold the event returned by
+ * a begin method and pass it to the matching end method. Begin
+ * returns null while nothing is recording, or when the JVM has
+ * no flight recorder, so the cost is then a single branch
+ */
+public final class Trace {
+
+    private static final boolean AVAILABLE = available();
+
+    private Trace() {}
+
+    /**
+     * Checks if events can be recorded at all
+     * @return Does this JVM have a flight recorder
+     */
+    public static boolean isAvailable() { return AVAILABLE; }
+
+    /**
+     * Starts timing a check of whether a player may use a block
+     * @return Event to end, or null if not recording
+     */
+    public static Object beginGuardCheck() { return AVAILABLE ? JfrEvents.beginGuardCheck() : null; }
+
+    /**
+     * Records a finished guard check
+     * @param event Event from beginGuardCheck, may be null
+     * @param world Name of world
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @param owners Number of owners, 0 if unprotected
+     * @param status Outcome such as GUARDED
+     */
+    public static void endGuardCheck(Object event, String world, int x, int y, int z, int owners, String status) {
+        if (event != null) JfrEvents.endGuardCheck(event, world, x, y, z, owners, status);
+    }
+
+    /**
+     * Starts timing a lookup of a UUID or username
+     * @param kind Either uuid or name
+     * @param key Username or UUID looked up
+     * @return Event to end, or null if not recording
+     */
+    public static Object beginLookup(String kind, Object key) {
+        return AVAILABLE ? JfrEvents.beginLookup(kind, key) : null;
+    }
+
+    /**
+     * Notes which tier answered a lookup still in progress
+     * @param event Event from beginLookup, may be null
+     * @param source Tier such as memory, server, disk or mojang
+     */
+    public static void lookupSource(Object event, String source) {
+        if (event != null) JfrEvents.lookupSource(event, source);
+    }
+
+    /**
+     * Records a finished lookup. Lookups that succeeded without
+     * a source were answered with an expired entry
+     * @param event Event from beginLookup, may be null
+     * @param error Failure, or null if answered
+     */
+    public static void endLookup(Object event, Throwable error) {
+        if (event != null) JfrEvents.endLookup(event, error);
+    }
+
+    /**
+     * Starts timing a write of protections to disk
+     * @param file Name of file being written
+     * @return Event to end, or null if not recording
+     */
+    public static Object beginSave(String file) { return AVAILABLE ? JfrEvents.beginSave(file) : null; }
+
+    /**
+     * Records a finished write
+     * @param event Event from beginSave, may be null
+     * @param bytes Size of file written, or -1 if it failed
+     */
+    public static void endSave(Object event, long bytes) {
+        if (event != null) JfrEvents.endSave(event, bytes);
+    }
+
+    private static boolean available() {
+        // Java 8 before update 262 has no jdk.jfr, so event classes must never load there
+        try {
+            Class.forName("jdk.jfr.Event", false, Trace.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+}
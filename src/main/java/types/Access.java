@@ -0,0 +1,171 @@
+package types;
+
+import index.ProtectionIndex;
+import index.TransferCache;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.permissions.ServerOperator;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decisions made whenever a player uses or breaks a block, or
+ * items move out of one, that may be protected. Guard and the
+ * benchmarks both call these, so what is measured is what runs
+ */
+public final class Access {
+
+    private Access() {}
+
+    /**
+     * Decides whether a player may use a block. Blocks of chunks
+     * still being read are unavailable to everyone
+     * @param lookup Protections to check
+     * @param world Name of world
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @param player UUID of player
+     * @param operator Player, only asked if op when they are
+     *                 not an owner
+     * @return Status of block in relation to player
+     */
+    public static GuardStatus status(Lookup lookup, String world, int x, int y, int z, UUID player,
+                                     ServerOperator operator) {
+        if (lookup.isLoading(world, x >> 4, z >> 4)) return GuardStatus.UNAVAILABLE; // Owners not yet read
+        Owners owners = lookup.get(world, x, y, z);
+        if (owners == null) return GuardStatus.AVAILABLE;
+        return mayUse(owners, player, operator) ? GuardStatus.GUARDED : GuardStatus.UNAVAILABLE;
+    }
+
+    /**
+     * Decides what breaking a block does to its protection
+     * @param type Material of block
+     * @param lookup Protections to check, only for materials
+     *               that can be protected
+     * @param world Name of world
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @param player UUID of player breaking block
+     * @param operator Player, only asked if op when they are
+     *                 not an owner
+     * @return Outcome of breaking block
+     */
+    public static Break breaking(Material type, Lookup lookup, String world, int x, int y, int z, UUID player,
+                                 ServerOperator operator) {
+        // Fast path, most broken blocks are neither protectable nor protected
+        if (!InventoryMaterials.contains(type)) return Break.UNPROTECTED;
+        if (lookup.isLoading(world, x >> 4, z >> 4)) return Break.LOADING;
+        Owners owners = lookup.get(world, x, y, z);
+        if (owners == null) return Break.UNPROTECTED;
+        return mayUse(owners, player, operator) ? Break.UNPROTECTS : Break.DENIED;
+    }
+
+    /**
+     * Decides whether items may move between inventories,
+     * reusing the decision for the same pair of blocks until
+     * protections change
+     * @param transfers Decisions already made
+     * @param lookup Protections to check
+     * @param source Inventory items leave
+     * @param destination Inventory items enter
+     * @return May items move
+     */
+    public static boolean mayTransfer(TransferCache transfers, Lookup lookup, Inventory source,
+                                      Inventory destination) {
+        Location from = source.getLocation();
+        if (from == null) return true; // Not backed by a block or entity
+        Location to = destination.getLocation();
+
+        // Destination without a location cannot share an owner, nor be cached
+        if (to == null) return mayMove(lookup, source, destination);
+
+        // Hoppers fire this many times a second, so decisions are cached until protections change
+        String world = from.getWorld().getName();
+        long fromKey = ProtectionIndex.blockKey(from.getBlockX(), from.getBlockY(), from.getBlockZ());
+        long toKey = ProtectionIndex.blockKey(to.getBlockX(), to.getBlockY(), to.getBlockZ());
+        byte verdict = transfers.get(world, fromKey, toKey);
+        if (verdict == TransferCache.UNKNOWN) {
+            boolean allowed = mayMove(lookup, source, destination);
+            transfers.put(world, fromKey, toKey, allowed);
+            return allowed;
+        }
+        return verdict == TransferCache.ALLOW;
+    }
+
+    /**
+     * Decides whether items may move between inventories. Items
+     * may only leave a protected inventory for one sharing an
+     * owner with it
+     * @param lookup Protections to check
+     * @param source Inventory items leave
+     * @param destination Inventory items enter
+     * @return May items move
+     */
+    public static boolean mayMove(Lookup lookup, Inventory source, Inventory destination) {
+        // Either side of a double chest may be protected, so every side is checked
+        List<Block> receiving = Containers.blocksOf(destination);
+        for (Block block: Containers.blocksOf(source)) {
+            String world = block.getWorld().getName();
+            int x = block.getX(), z = block.getZ();
+            if (lookup.isLoading(world, x >> 4, z >> 4)) return false; // Owners not yet read
+            Owners owners = lookup.get(world, x, block.getY(), z);
+            if (owners != null && !receives(lookup, receiving, owners)) return false;
+        }
+        return true;
+    }
+
+    private static boolean receives(Lookup lookup, List<Block> receiving, Owners owners) {
+        for (Block block: receiving) {
+            Owners receivers = lookup.get(block.getWorld().getName(), block.getX(), block.getY(), block.getZ());
+            if (receivers != null && receivers.sharesOwnerWith(owners)) return true;
+        }
+        return false;
+    }
+
+    private static boolean mayUse(Owners owners, UUID player, ServerOperator operator) {
+        // Owners and ops
+        return owners.contains(player) || operator.isOp();
+    }
+
+    /**
+     * Protections decisions are made from
+     */
+    public interface Lookup {
+
+        /**
+         * Gets owners of a block
+         * @param world Name of world
+         * @param x Block X
+         * @param y Block Y
+         * @param z Block Z
+         * @return Owners or null if unprotected
+         */
+        Owners get(String world, int x, int y, int z);
+
+        /**
+         * Checks if protections of a chunk are still being read
+         * @param world Name of world
+         * @param chunkX Chunk X
+         * @param chunkZ Chunk Z
+         * @return Is chunk being read
+         */
+        boolean isLoading(String world, int chunkX, int chunkZ);
+
+    }
+
+    /**
+     * Outcome of a player breaking a block
+     */
+    public enum Break {
+        UNPROTECTED, // Block is broken as usual
+        LOADING, // Owners not yet read, so block must stay
+        DENIED, // Another player owns block
+        UNPROTECTS, // Owner or op breaks block, removing its protection
+    }
+
+}
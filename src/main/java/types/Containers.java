@@ -0,0 +1,65 @@
+package types;
+
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.DoubleChestInventory;
+import org.bukkit.inventory.Inventory;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Finds the blocks behind protectable inventories. Blocks are
+ * found from the inventory's own location through a table of
+ * inventory types, since asking for an inventory's holder
+ * copies the whole block state including its contents
+ */
+public class Containers {
+
+    private final static Map<InventoryType, Function<Inventory, List<Block>>> resolvers =
+            new EnumMap<>(InventoryType.class);
+
+    static {
+        // Inventory types of every block in InventoryMaterials
+        for (InventoryType type: EnumSet.of(
+                InventoryType.FURNACE,
+                InventoryType.BLAST_FURNACE,
+                InventoryType.SMOKER,
+                InventoryType.HOPPER,
+                InventoryType.DISPENSER,
+                InventoryType.DROPPER,
+                InventoryType.BARREL,
+                InventoryType.LOOM,
+                InventoryType.GRINDSTONE))
+            resolvers.put(type, Containers::single);
+        resolvers.put(InventoryType.CHEST, Containers::chest);
+    }
+
+    /**
+     * Gets blocks holding an inventory
+     * @param inventory Inventory being used
+     * @return Both sides of a double chest, one block for other
+     *         protectable inventories, otherwise an empty list
+     */
+    public static List<Block> blocksOf(Inventory inventory) {
+        Function<Inventory, List<Block>> resolver = resolvers.get(inventory.getType());
+        return resolver == null ? Collections.emptyList() : resolver.apply(inventory);
+    }
+
+    private static List<Block> single(Inventory inventory) {
+        // Inventories created by plugins have no location
+        Location location = inventory.getLocation();
+        return location == null ? Collections.emptyList() : Collections.singletonList(location.getBlock());
+    }
+
+    private static List<Block> chest(Inventory inventory) {
+        // A double chest is located between its sides, so each side is located instead
+        if (!(inventory instanceof DoubleChestInventory)) return single(inventory);
+        Location left = ((DoubleChestInventory) inventory).getLeftSide().getLocation();
+        Location right = ((DoubleChestInventory) inventory).getRightSide().getLocation();
+        if (left == null || right == null) return Collections.emptyList();
+        return Arrays.asList(left.getBlock(), right.getBlock());
+    }
+
+}
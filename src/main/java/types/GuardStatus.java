@@ -0,0 +1,10 @@
+package types;
+
+/**
+ * Status of a block in relation to a player
+ */
+public enum GuardStatus {
+    AVAILABLE, // No one owns block
+    UNAVAILABLE, // Another player owns the block
+    GUARDED, // Current player owns the block
+}
@@ -2,15 +2,15 @@ package types;
 
 import org.bukkit.Material;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Allows for checking if blocks are protectable inventories
  */
 public class InventoryMaterials {
 
-    private final static List<org.bukkit.Material> materials = Arrays.asList(
+    private final static Set<org.bukkit.Material> materials = EnumSet.of(
             Material.CHEST,
             Material.TRAPPED_CHEST,
             Material.FURNACE,
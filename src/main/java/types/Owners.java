@@ -0,0 +1,222 @@
+package types;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable set of owners based on UUID. Instances are interned
+ * so every protection with the same owners shares one instance,
+ * and UUIDs are held as pairs of longs so checking an owner
+ * never allocates. Names are never looked up here
+ */
+public abstract class Owners {
+
+    private static final WeakHashMap<Owners, WeakReference<Owners>> interned = new WeakHashMap<>();
+
+    Owners() {}
+
+    /**
+     * Gets owners consisting of a single player
+     * @param uuid UUID of owner
+     * @return Shared instance
+     */
+    public static Owners of(UUID uuid) {
+        return intern(new Single(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+    }
+
+    /**
+     * Gets owners consisting of several players
+     * @param uuids UUIDs of owners, duplicates are ignored
+     * @return Shared instance
+     * @throws IllegalArgumentException No owners were given
+     */
+    public static Owners of(Collection<UUID> uuids) {
+        // Sorted so the same players are always stored the same way
+        UUID[] sorted = new TreeSet<>(uuids).toArray(new UUID[0]);
+        if (sorted.length == 0) throw new IllegalArgumentException("Owners cannot be empty");
+        if (sorted.length == 1) return of(sorted[0]);
+
+        long[] bits = new long[sorted.length * 2];
+        for (int i = 0; i < sorted.length; i++) {
+            bits[i * 2] = sorted[i].getMostSignificantBits();
+            bits[i * 2 + 1] = sorted[i].getLeastSignificantBits();
+        }
+        return intern(new Multi(bits));
+    }
+
+    /**
+     * Gets number of distinct owner sets currently in use
+     * @return Interned instance count
+     */
+    public static int internedCount() {
+        synchronized (interned) {
+            return interned.size();
+        }
+    }
+
+    /**
+     * Verifies if UUID is one of existing owners
+     * @param uuid UUID of player to check
+     * @return Is player an existing owner
+     */
+    public abstract boolean contains(UUID uuid);
+
+    /**
+     * Gets number of owners
+     * @return Owner count
+     */
+    public abstract int size();
+
+    /**
+     * Gets one of the owners
+     * @param i Index of owner, from 0 to size() - 1
+     * @return UUID of owner
+     */
+    public abstract UUID get(int i);
+
+    /**
+     * Checks if there are multiple owners
+     * @return Is there more than one owner
+     */
+    public boolean hasMulti() { return size() > 1; }
+
+    /**
+     * Checks if any owner is also one of the other owners
+     * @param other Owners to compare with
+     * @return Is there a shared owner
+     */
+    public boolean sharesOwnerWith(Owners other) {
+        if (other == this) return true; // Interned, so usually decided here
+        for (int i = 0; i < size(); i++)
+            if (other.contains(get(i))) return true;
+        return false;
+    }
+
+    /**
+     * Gets owners with an additional owner
+     * @param uuid New additional owner
+     * @return Owners including new owner
+     */
+    public Owners with(UUID uuid) {
+        if (contains(uuid)) return this;
+        List<UUID> copy = getUUIDs();
+        copy.add(uuid);
+        return of(copy);
+    }
+
+    /**
+     * Gets owners without an existing owner
+     * @param uuid Owner to remove
+     * @return Owners excluding owner
+     * @throws IllegalArgumentException Owner is the only owner
+     */
+    public Owners without(UUID uuid) {
+        if (!contains(uuid)) return this;
+        List<UUID> copy = getUUIDs();
+        copy.remove(uuid);
+        return of(copy);
+    }
+
+    /**
+     * Gets owner UUID's
+     * @return New list of UUID's
+     */
+    public List<UUID> getUUIDs() {
+        List<UUID> uuids = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) uuids.add(get(i));
+        return uuids;
+    }
+
+    /**
+     * Gets owner UUID's as a List of Strings
+     * @return List of UUID's mapped to Strings
+     */
+    public List<String> asList() { return getUUIDs().stream().map(UUID::toString).collect(Collectors.toList()); }
+
+    /**
+     * Lists owner UUID's, names are never looked up
+     * @return Comma separated UUID's
+     */
+    @Override
+    public String toString() { return String.join(", ", asList()); }
+
+    private static Owners intern(Owners owners) {
+        synchronized (interned) {
+            WeakReference<Owners> ref = interned.get(owners);
+            Owners existing = ref == null ? null : ref.get();
+            if (existing != null) return existing;
+            interned.put(owners, new WeakReference<>(owners));
+            return owners;
+        }
+    }
+
+    /**
+     * Owners of the large majority of protections
+     */
+    private static final class Single extends Owners {
+
+        private final long most, least;
+
+        Single(long most, long least) {
+            this.most = most;
+            this.least = least;
+        }
+
+        @Override
+        public boolean contains(UUID uuid) {
+            return uuid.getLeastSignificantBits() == least && uuid.getMostSignificantBits() == most;
+        }
+
+        @Override
+        public int size() { return 1; }
+
+        @Override
+        public UUID get(int i) {
+            if (i != 0) throw new IndexOutOfBoundsException("Owner " + i + " of 1");
+            return new UUID(most, least);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Single && ((Single) o).most == most && ((Single) o).least == least;
+        }
+
+        @Override
+        public int hashCode() { return Long.hashCode(most ^ least); }
+
+    }
+
+    /**
+     * Two or more owners, held as sorted most and least
+     * significant bit pairs
+     */
+    private static final class Multi extends Owners {
+
+        private final long[] bits;
+
+        Multi(long[] bits) { this.bits = bits; }
+
+        @Override
+        public boolean contains(UUID uuid) {
+            long most = uuid.getMostSignificantBits(), least = uuid.getLeastSignificantBits();
+            for (int i = 0; i < bits.length; i += 2)
+                if (bits[i + 1] == least && bits[i] == most) return true;
+            return false;
+        }
+
+        @Override
+        public int size() { return bits.length / 2; }
+
+        @Override
+        public UUID get(int i) { return new UUID(bits[i * 2], bits[i * 2 + 1]); }
+
+        @Override
+        public boolean equals(Object o) { return o instanceof Multi && Arrays.equals(((Multi) o).bits, bits); }
+
+        @Override
+        public int hashCode() { return Arrays.hashCode(bits); }
+
+    }
+
+}
@@ -7,7 +7,6 @@ import org.bukkit.event.block.SignChangeEvent;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -24,6 +23,10 @@ public class Signs {
             Material.SPRUCE_WALL_SIGN
     );
 
+    // Starts with @ followed by 3 to 16 characters for usernames as defined by Minecraft
+    private static final Pattern username = Pattern.compile("@[a-zA-Z0-9_-]{3,16}");
+    private static final Pattern whitespace = Pattern.compile("[\\s\\n\\r\\t]+");
+
     /**
      * Checks if Material is a valid wall sign
      * @param m Material to check
@@ -37,16 +40,16 @@ public class Signs {
      *          text on a wall sign
      * @return Is syntax valid
      */
-    public static boolean hasValidSyntax(SignChangeEvent e) {
-        // Compress content
-        String content = getCompressedText(e.getLines());
-        // Defined regex (Starts and ends with ~ containing a-z, A-Z or 0-9 in between)
-        // Between 3 to 16 characters for usernames as defined by Minecraft
-        String regex = "@{1}[a-zA-Z0-9_-]{3,16}";
+    public static boolean hasValidSyntax(SignChangeEvent e) { return hasValidSyntax(e.getLines()); }
 
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(content);
-        return matcher.matches();
+    /**
+     * Validates syntax of wall sign text
+     * @param lines Lines from wall sign
+     * @return Is syntax valid
+     */
+    public static boolean hasValidSyntax(String[] lines) {
+        // Patterns are compiled once as signs are validated on every edit
+        return username.matcher(getCompressedText(lines)).matches();
     }
 
     /**
@@ -55,7 +58,7 @@ public class Signs {
      * @return Compressed/Trimmed wall sign text
      */
     private static String getCompressedText(String[] lines) {
-        return String.join("", lines).replaceAll("[\\s\\n\\r\\t]+","");
+        return whitespace.matcher(String.join("", lines)).replaceAll("");
     }
 
     /**
@@ -0,0 +1,94 @@
+package mojang;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives NameLookup through the upstream gate against a stub of
+ * the profile endpoint
+ */
+public class NameLookupTest {
+
+    private static final UUID NOTCH = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+
+    private StubServer server;
+    private Upstream upstream;
+    private NameLookup lookup;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubServer();
+        upstream = new Upstream(new RateLimiter(6000, 100), new CircuitBreaker(5, 60000, 60000, state -> {}), 5000);
+        lookup = new NameLookup(server.url("/session/minecraft/profile/").toString());
+    }
+
+    @After
+    public void tearDown() { server.close(); }
+
+    @Test
+    public void fetchesNameFromConfiguredEndpoint() throws Exception {
+        server.respond(200, request -> "{\"id\":\"069a79f444e94726a5befca90e38aaf5\",\"name\":\"Notch\"}");
+
+        assertEquals("Notch", upstream.call(() -> lookup.fetch(NOTCH)));
+        assertEquals("/session/minecraft/profile/069a79f444e94726a5befca90e38aaf5", server.requests().get(0).path);
+        assertEquals("GET", server.requests().get(0).method);
+    }
+
+    @Test
+    public void rateLimitTripsBreaker() {
+        server.respond(429, request -> "");
+
+        try {
+            upstream.call(() -> lookup.fetch(NOTCH));
+            fail("Rate limited lookup succeeded");
+        } catch (Exception e) {
+            assertTrue(e instanceof RateLimitedException);
+        }
+        assertEquals(1, upstream.rateLimited());
+        assertEquals(CircuitBreaker.State.OPEN, upstream.breaker().state());
+
+        // Nothing more is sent while backing off
+        try {
+            upstream.call(() -> lookup.fetch(NOTCH));
+            fail("Lookup sent while backing off");
+        } catch (Exception e) {
+            assertTrue(e instanceof UpstreamUnavailableException);
+        }
+        assertEquals(1, server.requests().size());
+    }
+
+    @Test
+    public void unknownUUIDIsNotAFailure() {
+        server.respond(204, request -> "");
+
+        try {
+            upstream.call(() -> lookup.fetch(NOTCH));
+            fail("Unknown UUID resolved");
+        } catch (Exception e) {
+            assertTrue(e instanceof UnknownProfileException);
+        }
+        assertEquals(0, upstream.failures());
+        assertEquals(CircuitBreaker.State.CLOSED, upstream.breaker().state());
+    }
+
+    @Test
+    public void serverErrorCountsAsFailure() {
+        server.respond(500, request -> "");
+
+        try {
+            upstream.call(() -> lookup.fetch(NOTCH));
+            fail("Failed lookup resolved");
+        } catch (Exception e) {
+            assertTrue(e instanceof IOException);
+        }
+        assertEquals(1, upstream.failures());
+        assertEquals(0, upstream.rateLimited());
+    }
+
+}
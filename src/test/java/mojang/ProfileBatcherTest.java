@@ -0,0 +1,149 @@
+package mojang;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives ProfileBatcher against a stub of the bulk profile
+ * endpoint, which knows every name not starting with "unknown"
+ */
+public class ProfileBatcherTest {
+
+    private StubServer server;
+    private Upstream upstream;
+    private ProfileBatcher batcher;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubServer();
+        server.respond(200, request -> profiles(request.body));
+        upstream = new Upstream(new RateLimiter(6000, 100), new CircuitBreaker(5, 1000, 1000, state -> {}), 5000);
+    }
+
+    @After
+    public void tearDown() {
+        if (batcher != null) batcher.close();
+        server.close();
+    }
+
+    @Test
+    public void resolvesMoreThanTenNamesInBatchesOfTen() throws Exception {
+        batcher = batcher(50);
+        List<CompletableFuture<UUID>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) futures.add(batcher.resolve("Player" + i));
+
+        for (int i = 0; i < 25; i++)
+            assertEquals(uuidOf("Player" + i), futures.get(i).get(2, TimeUnit.SECONDS));
+        assertEquals(3, server.requests().size());
+        int names = 0;
+        for (StubServer.Request request: server.requests()) {
+            assertEquals("POST", request.method);
+            int size = parse(request.body).size();
+            assertTrue("Batch of " + size, size <= 10);
+            names += size;
+        }
+        assertEquals(25, names);
+    }
+
+    @Test
+    public void unknownNamesFailWithoutCountingAsFailures() throws Exception {
+        batcher = batcher(50);
+        CompletableFuture<UUID> known = batcher.resolve("Notch");
+        CompletableFuture<UUID> unknown = batcher.resolve("unknown_1");
+
+        assertEquals(uuidOf("Notch"), known.get(2, TimeUnit.SECONDS));
+        try {
+            unknown.get(2, TimeUnit.SECONDS);
+            fail("Unknown name resolved");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnknownProfileException);
+        }
+        assertEquals(1, server.requests().size()); // Both went in one batch
+        assertEquals(0, upstream.failures());
+        assertEquals(CircuitBreaker.State.CLOSED, upstream.breaker().state());
+    }
+
+    @Test
+    public void sameNameIsOnlySentOnce() throws Exception {
+        batcher = batcher(50);
+        CompletableFuture<UUID> first = batcher.resolve("Notch");
+        CompletableFuture<UUID> second = batcher.resolve("NOTCH");
+
+        assertSame(first, second);
+        assertEquals(uuidOf("Notch"), second.get(2, TimeUnit.SECONDS));
+        assertEquals(1, parse(server.requests().get(0).body).size());
+    }
+
+    @Test
+    public void partialBatchWaitsForWindow() throws Exception {
+        batcher = batcher(300);
+        long start = System.nanoTime();
+        CompletableFuture<UUID> first = batcher.resolve("Alice");
+        CompletableFuture<UUID> second = batcher.resolve("Bob");
+
+        assertEquals(uuidOf("Bob"), second.get(2, TimeUnit.SECONDS));
+        assertEquals(uuidOf("Alice"), first.get(2, TimeUnit.SECONDS));
+        assertEquals(1, server.requests().size());
+        long waited = TimeUnit.NANOSECONDS.toMillis(server.requests().get(0).receivedAt - start);
+        assertTrue("Sent after " + waited + "ms", waited >= 250);
+    }
+
+    @Test
+    public void fullBatchIsSentWithoutWaitingForWindow() throws Exception {
+        batcher = batcher(TimeUnit.MINUTES.toMillis(1));
+        List<CompletableFuture<UUID>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) futures.add(batcher.resolve("Player" + i));
+
+        for (int i = 0; i < 10; i++)
+            assertEquals(uuidOf("Player" + i), futures.get(i).get(2, TimeUnit.SECONDS));
+        assertEquals(1, server.requests().size());
+    }
+
+    private ProfileBatcher batcher(long windowMillis) throws IOException {
+        return new ProfileBatcher(server.url("/profiles/minecraft"), upstream, windowMillis);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String profiles(String body) {
+        // Answers the way Mojang does, leaving out names that do not exist
+        JSONArray found = new JSONArray();
+        for (Object name: parse(body)) {
+            if (((String) name).toLowerCase(Locale.ROOT).startsWith("unknown")) continue;
+            JSONObject profile = new JSONObject();
+            profile.put("id", uuidOf((String) name).toString().replace("-", ""));
+            profile.put("name", name);
+            found.add(profile);
+        }
+        return found.toJSONString();
+    }
+
+    private static JSONArray parse(String body) {
+        try {
+            return (JSONArray) new JSONParser().parse(body);
+        } catch (ParseException e) {
+            throw new AssertionError("Request body is not a JSON array: " + body, e);
+        }
+    }
+
+    private static UUID uuidOf(String name) {
+        return UUID.nameUUIDFromBytes(name.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,103 @@
+package mojang;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Local stand in for a Mojang API endpoint, recording every
+ * request and answering with whatever the test has set
+ */
+class StubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private volatile int status = 200;
+    private volatile Function<Request, String> responder = r -> "";
+
+    /**
+     * Starts server on a free port of the loopback address
+     * @throws IOException Failed to bind
+     */
+    StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Gets address of a path on this server
+     * @param path Path starting with a slash
+     * @return Full URL
+     * @throws IOException Malformed path
+     */
+    URL url(String path) throws IOException {
+        return new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(), path);
+    }
+
+    /**
+     * Sets how following requests are answered
+     * @param status HTTP status
+     * @param responder Body for each request
+     */
+    void respond(int status, Function<Request, String> responder) {
+        this.status = status;
+        this.responder = responder;
+    }
+
+    /**
+     * Gets every request received so far, in order
+     * @return Received requests
+     */
+    List<Request> requests() { return requests; }
+
+    @Override
+    public void close() { server.stop(0); }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0; ) body.write(buffer, 0, n);
+        }
+        Request request = new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                new String(body.toByteArray(), StandardCharsets.UTF_8));
+        requests.add(request);
+
+        byte[] response = responder.apply(request).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    /**
+     * Request as received by the server
+     */
+    static class Request {
+
+        final String method;
+        final String path;
+        final String body;
+        final long receivedAt = System.nanoTime();
+
+        Request(String method, String path, String body) {
+            this.method = method;
+            this.path = path;
+            this.body = body;
+        }
+
+    }
+
+}